@@ -0,0 +1,58 @@
+package client;
+
+import java.rmi.RemoteException;
+import java.rmi.server.RemoteObject;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import remote.ClockSample;
+import remote.ClockService;
+
+/**
+ * Ida y vuelta real por RMI sobre loopback contra un ClockClient exportado en el mismo proceso.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dclock.log.nivel=ERROR", "-Djava.rmi.server.hostname=127.0.0.1"})
+public class RoundTripRmiBenchmark {
+
+    private ClockClient cliente;
+    private ClockService stub;
+
+    @Setup(Level.Trial)
+    public void preparar() throws RemoteException {
+        cliente = new ClockClient("bench", 0);
+        stub = (ClockService) RemoteObject.toStub(cliente);
+        // Primera llamada fuera de la medición: establece la conexión
+        stub.getTimeMillis();
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() throws RemoteException {
+        UnicastRemoteObject.unexportObject(cliente, true);
+    }
+
+    @Benchmark
+    public long getTimeMillis() throws RemoteException {
+        return stub.getTimeMillis();
+    }
+
+    @Benchmark
+    public ClockSample sample() throws RemoteException {
+        return stub.sample();
+    }
+}
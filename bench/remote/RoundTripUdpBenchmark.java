@@ -0,0 +1,80 @@
+package remote;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ida y vuelta de sample() por el transporte UDP sobre loopback, comparable con RoundTripRmiBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dclock.log.nivel=ERROR"})
+public class RoundTripUdpBenchmark {
+
+    // Servicio mínimo: solo interesa el coste del transporte
+    static final class ServicioLocal implements ClockService {
+        @Override
+        public long getTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void applyAdjustment(long offsetMillis) {
+        }
+
+        @Override
+        public String getId() {
+            return "bench";
+        }
+
+        @Override
+        public boolean isAlive() {
+            return true;
+        }
+
+        @Override
+        public ClockSample sample() {
+            long ahora = System.currentTimeMillis();
+            return new ClockSample(ahora, ahora, 0, true);
+        }
+    }
+
+    private RespondedorUdp respondedor;
+    private TransporteUdp transporte;
+    private InetSocketAddress destino;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        respondedor = new RespondedorUdp(new ServicioLocal(), 0);
+        transporte = new TransporteUdp(1_000);
+        destino = new InetSocketAddress("127.0.0.1", respondedor.getPuerto());
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() throws IOException {
+        transporte.cerrar();
+        respondedor.close();
+    }
+
+    @Benchmark
+    public ClockSample sample() throws IOException, TimeoutException, InterruptedException {
+        return transporte.muestrear(destino);
+    }
+}
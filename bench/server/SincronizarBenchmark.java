@@ -0,0 +1,107 @@
+package server;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.rmi.RemoteException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import remote.ClockSample;
+import remote.ClockService;
+
+/**
+ * Ronda completa de sincronizar() contra clientes en el mismo proceso (sin red), para medir
+ * el coste propio del coordinador según el tamaño del clúster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dclock.log.nivel=ERROR", "-Dclock.diario=false"})
+public class SincronizarBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    int clientes;
+
+    private ClockServer server;
+    private PrintStream salidaOriginal;
+
+    /** Cliente en proceso: responde al instante con un desfase fijo. */
+    static final class StubReloj implements ClockService {
+        private final long desfase;
+
+        StubReloj(long desfase) {
+            this.desfase = desfase;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return System.currentTimeMillis() + desfase;
+        }
+
+        @Override
+        public ClockSample sample() {
+            long t = System.currentTimeMillis() + desfase;
+            return new ClockSample(t, t, desfase, true);
+        }
+
+        @Override
+        public void applyAdjustment(long offsetMillis) {
+        }
+
+        @Override
+        public boolean aplicarAjusteEpoca(long epoca, double ajusteMillis) {
+            return true;
+        }
+
+        @Override
+        public void applyDriftRate(double ppm) {
+        }
+
+        @Override
+        public String getId() {
+            return "stub";
+        }
+
+        @Override
+        public boolean isAlive() {
+            return true;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void preparar() throws RemoteException {
+        // Las tablas de consola no forman parte de lo que se mide
+        salidaOriginal = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        server = new ClockServer();
+        for (int i = 0; i < clientes; i++) {
+            server.registrarCliente("c" + i, new StubReloj((i % 200) - 100));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() {
+        // Libera programador, rueda de leases, pool de consultas, diario y transporte
+        server.cerrar();
+        System.setOut(salidaOriginal);
+    }
+
+    @Benchmark
+    public void sincronizar() {
+        server.sincronizar();
+    }
+}
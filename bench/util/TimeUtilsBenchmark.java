@@ -0,0 +1,38 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Formateo de horas: TimeUtils.fmt() frente al Formateador con prefijo en caché.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeUtilsBenchmark {
+
+    private final TimeUtils.Formateador formateador = new TimeUtils.Formateador();
+    private final char[] buffer = new char[TimeUtils.LONGITUD_ISO];
+    private long millis = System.currentTimeMillis();
+
+    @Benchmark
+    public String fmt() {
+        return TimeUtils.fmt(millis++);
+    }
+
+    @Benchmark
+    public int formateador() {
+        return formateador.formatear(millis++, buffer, 0);
+    }
+}
@@ -1,35 +1,105 @@
 package client;
 
+import java.io.IOException;
+import java.net.InetAddress;
 import java.rmi.Naming;
 import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import remote.ClockSample;
 import remote.ClockService;
+import remote.FabricaSockets;
+import remote.InstantaneaReloj;
+import remote.RespondedorUdp;
+import server.ClockServer;
+import util.Log;
+import util.RelojAjustable;
 import util.TimeUtils;
+import util.VentanaEpocas;
 
 public class ClockClient extends UnicastRemoteObject implements ClockService {
     private final String id;
-    private long offsetMillis;
+    // Prefijo de los mensajes de registro, construido una sola vez
+    private final String prefijoLog;
+    // Hilo de latidos hacia el servidor
+    private final ScheduledExecutorService latidos = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lease-latido");
+        t.setDaemon(true);
+        return t;
+    });
+    // Reloj local: aplica ajustes y deriva de forma gradual, con lecturas monótonas
+    private final RelojAjustable reloj;
+    // Servidor embebido cuando este cliente actúa como sub-coordinador de su propio grupo
+    private volatile ClockServer subcoordinador;
+    // Dirección en la que se atienden muestras por UDP (null si solo se usa RMI)
+    private volatile String endpointUdp;
+    // Servidor en el que está registrado este cliente (destino de las instantáneas del monitor)
+    private volatile ClockService servidorActual;
+    // Publicación periódica del estado al monitor del servidor (null si no está suscrito)
+    private ScheduledFuture<?> publicacion;
+    // Épocas de ajuste ya aplicadas, para descartar entregas repetidas sin perder las atrasadas
+    private final VentanaEpocas epocasAplicadas = new VentanaEpocas();
+
+    // Sockets RMI ajustados (TCP_NODELAY y timeouts) para todo el proceso, antes del primer export
+    static {
+        FabricaSockets.instalar();
+    }
 
     protected ClockClient(String id, long offsetMillis) throws RemoteException {
         super();
         this.id = id;
-        this.offsetMillis = offsetMillis;
+        this.prefijoLog = "[" + id + "] ";
+        this.reloj = new RelojAjustable(offsetMillis);
     }
 
     @Override
     public long getTimeMillis() throws RemoteException {
-        long reported = System.currentTimeMillis() + offsetMillis;
-        System.out.println("[" + id + "] getTimeMillis() -> " + TimeUtils.fmt(reported) + " (ms=" + reported + ")");
+        long reported = reloj.leerMillis();
+        Log.hora(Log.Nivel.DEBUG, prefijoLog, "getTimeMillis() -> ", reported);
         return reported;
     }
 
     @Override
     public void applyAdjustment(long offsetMillis) throws RemoteException {
-        System.out.println("[" + id + "] 📍 Recibiendo ajuste (ms): " + offsetMillis);
-        this.offsetMillis += offsetMillis;
-        long newLocal = System.currentTimeMillis() + this.offsetMillis;
-        System.out.println("[" + id + "] ✅ Nuevo reloj local -> " + TimeUtils.fmt(newLocal) +
-                " (offsetTotal(ms)=" + this.offsetMillis + ")");
+        ajustar(offsetMillis);
+    }
+
+    @Override
+    public boolean aplicarAjusteEpoca(long epoca, double ajusteMillis) throws RemoteException {
+        // Solo la primera entrega de cada época se aplica; los reintentos se ignoran
+        if (!epocasAplicadas.marcar(epoca)) {
+            Log.valor(Log.Nivel.DEBUG, prefijoLog, "Ajuste ya aplicado, época ", epoca);
+            return false;
+        }
+        ajustar(ajusteMillis);
+        return true;
+    }
+
+    private void ajustar(double ajusteMillis) {
+        reloj.ajustar(ajusteMillis);
+        Log.valor(Log.Nivel.INFO, prefijoLog, "📍 Ajuste recibido (ms): ", ajusteMillis);
+        // Como sub-coordinador, el grupo se mueve junto con este nodo
+        ClockServer sub = subcoordinador;
+        if (sub != null) {
+            sub.difundirAjuste(ajusteMillis);
+        }
+        Log.hora(Log.Nivel.INFO, prefijoLog, "✅ Nuevo reloj local -> ", reloj.objetivoMillis());
+        Log.valor(Log.Nivel.INFO, prefijoLog, "offsetTotal(ms)=", reloj.correccionMillis());
+    }
+
+    @Override
+    public void applyDriftRate(double ppm) throws RemoteException {
+        reloj.fijarDerivaPpm(ppm);
+        Log.valor(Log.Nivel.INFO, prefijoLog, "📈 Corrección de deriva (ppm): ", ppm);
+    }
+
+    @Override
+    public String getEndpointUdp() throws RemoteException {
+        return endpointUdp;
     }
 
     @Override
@@ -42,13 +112,107 @@ public class ClockClient extends UnicastRemoteObject implements ClockService {
         return true;
     }
 
+    @Override
+    public ClockSample sample() throws RemoteException {
+        // Se informa la hora objetivo (con el slew pendiente) para que el servidor no corrija dos veces
+        long recibido = reloj.objetivoMillis();
+        long offset = reloj.correccionMillis();
+        long enviado = reloj.objetivoMillis();
+        Log.hora(Log.Nivel.DEBUG, prefijoLog, "sample() -> ", enviado);
+        return new ClockSample(recibido, enviado, offset, true);
+    }
+
     @Override
     public void checkSync(long serverTime) throws RemoteException {
-        long local = System.currentTimeMillis() + offsetMillis;
+        long local = reloj.leerMillis();
         System.out.println("[" + id + "] CheckSync - ServerTime=" + TimeUtils.fmt(serverTime) +
                 " | Local=" + TimeUtils.fmt(local) + " (ms=" + local + ")");
     }
 
+    @Override
+    public synchronized void suscribir(long periodoMs) throws RemoteException {
+        if (publicacion != null) {
+            publicacion.cancel(false);
+            publicacion = null;
+        }
+        if (periodoMs > 0) {
+            publicacion = latidos.scheduleAtFixedRate(this::publicarEstado, 0, periodoMs, TimeUnit.MILLISECONDS);
+        }
+        Log.valor(Log.Nivel.INFO, prefijoLog, "📡 Publicando estado al monitor cada (ms): ", periodoMs);
+    }
+
+    private void publicarEstado() {
+        ClockService servidor = servidorActual;
+        if (servidor == null) {
+            return;
+        }
+        try {
+            servidor.publicarInstantanea(new InstantaneaReloj(id, reloj.objetivoMillis(), reloj.correccionMillis(),
+                                                              reloj.pendienteMillis(), reloj.getDerivaPpm()));
+        } catch (RemoteException | RuntimeException e) {
+            // Los latidos se encargan de reconectar; aquí basta con esperar a la siguiente publicación
+            Log.texto(Log.Nivel.DEBUG, prefijoLog, "No se pudo publicar el estado: " + e.getMessage());
+        }
+    }
+
+    // Renueva periódicamente el lease de registro; si el servidor ya no conoce al cliente
+    // (lease vencido o servidor reiniciado) se vuelve a registrar.
+    private void iniciarLatidos(ClockService servidorInicial, String serverUrl) {
+        long periodo = Long.getLong("clock.lease.latidoMs", 5_000L);
+        ClockService[] servidor = {servidorInicial};
+        latidos.scheduleWithFixedDelay(() -> {
+            try {
+                if (!servidor[0].renovarLease(id)) {
+                    registrarseEn(servidor[0]);
+                    Log.texto(Log.Nivel.INFO, prefijoLog, "🔁 Lease vencido, registrado de nuevo");
+                }
+            } catch (RemoteException e) {
+                // El servidor pudo reiniciarse: se busca de nuevo y se vuelve a registrar
+                try {
+                    servidor[0] = (ClockService) Naming.lookup(serverUrl);
+                    registrarseEn(servidor[0]);
+                    Log.texto(Log.Nivel.INFO, prefijoLog, "🔁 Registrado de nuevo en el servidor");
+                } catch (Exception ex) {
+                    Log.texto(Log.Nivel.WARN, prefijoLog, "Servidor no disponible para el latido");
+                }
+            } catch (RuntimeException e) {
+                Log.texto(Log.Nivel.WARN, prefijoLog, "El servidor no admite leases; se dejan de enviar latidos");
+                throw e;
+            }
+        }, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Activa el modo sub-coordinador: publica en un registro RMI local un ClockServer que comparte
+     * el reloj de este cliente y sincroniza periódicamente a los clientes que se registren en él.
+     * Tras cada ronda local el reloj de este nodo es el consenso del grupo, que es lo que ve el
+     * coordinador superior; sus ajustes se reenvían hacia abajo.
+     */
+    private String iniciarSubcoordinador(int puerto) throws Exception {
+        ClockServer sub = new ClockServer(reloj);
+        String hostAddress = InetAddress.getLocalHost().getHostAddress();
+        LocateRegistry.createRegistry(puerto);
+        String url = "rmi://" + hostAddress + ":" + puerto + "/ClockServer";
+        Naming.rebind(url, sub);
+        sub.iniciarSincronizacionPeriodica();
+        subcoordinador = sub;
+        return url;
+    }
+
+    // Cada coordinador numera sus épocas por su cuenta: al (re)registrarse se acepta la numeración nueva
+    private void registrarseEn(ClockService servidor) throws RemoteException {
+        epocasAplicadas.reiniciar();
+        servidorActual = servidor;
+        servidor.registrarCliente(id, this);
+    }
+
+    // Atiende las muestras del coordinador por UDP; debe arrancar antes de registrarse
+    private void iniciarRespondedorUdp(int puerto) throws IOException {
+        RespondedorUdp respondedor = new RespondedorUdp(this, puerto);
+        String host = System.getProperty("java.rmi.server.hostname", InetAddress.getLocalHost().getHostAddress());
+        endpointUdp = host + ":" + respondedor.getPuerto();
+    }
+
     // ⭐ Los métodos registrarCliente e iniciarSincronizacion NO se implementan aquí
     // (usarán la implementación por defecto que lanza UnsupportedOperationException)
 
@@ -67,11 +231,25 @@ public class ClockClient extends UnicastRemoteObject implements ClockService {
             long offsetMs = offsetSec * 1000L;
             ClockClient client = new ClockClient(id, offsetMs);
 
+            // Transporte UDP: -Dclock.transporte=udp (puerto con -Dclock.udp.puerto, 0 = efímero)
+            if ("udp".equalsIgnoreCase(System.getProperty("clock.transporte", "rmi"))) {
+                client.iniciarRespondedorUdp(Integer.getInteger("clock.udp.puerto", 0));
+                System.out.println("📡 Muestras por UDP en " + client.endpointUdp);
+            }
+
             String serverUrl = "rmi://" + serverIP + ":" + port + "/ClockServer";
             ClockService servidor = (ClockService) Naming.lookup(serverUrl);
             
             // Registrar este cliente con el servidor
-            servidor.registrarCliente(id, client);
+            client.registrarseEn(servidor);
+            client.iniciarLatidos(servidor, serverUrl);
+
+            // Modo sub-coordinador: -Dclock.sub.puerto=<puerto del registro RMI local>
+            Integer puertoSub = Integer.getInteger("clock.sub.puerto");
+            if (puertoSub != null) {
+                String urlSub = client.iniciarSubcoordinador(puertoSub);
+                System.out.println("🧭 Sub-coordinador activo; los clientes del grupo deben usar: " + urlSub);
+            }
             
             System.out.println("✅ Cliente " + id + " registrado en servidor " + serverIP);
             System.out.println("📍 Offset inicial: " + offsetMs + "ms");
@@ -82,8 +260,9 @@ public class ClockClient extends UnicastRemoteObject implements ClockService {
                     try {
                         String last = "";
                         while (!Thread.currentThread().isInterrupted()) {
-                            long local = System.currentTimeMillis() + client.offsetMillis;
-                            String s = "[" + id + "] Reloj local: " + TimeUtils.fmt(local) + " (offsetMs=" + client.offsetMillis + ")";
+                            long local = client.reloj.leerMillis();
+                            String s = "[" + id + "] Reloj local: " + TimeUtils.fmt(local) + " (offsetMs=" + client.reloj.correccionMillis() +
+                                       ", pendienteMs=" + Math.round(client.reloj.pendienteMillis()) + ")";
                             // Rellenar con espacios para limpiar lineas previas si queda contenido
                             int pad = Math.max(0, Math.max(last.length() - s.length(), 0));
                             System.out.print('\r' + s + "" + " ".repeat(pad));
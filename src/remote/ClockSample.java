@@ -0,0 +1,45 @@
+package remote;
+
+import java.io.Serializable;
+
+/**
+ * Muestra de reloj devuelta por un nodo en una sola llamada RMI (equivalente a t2/t3 de NTP).
+ * El coordinador aporta t1 y t4 con su propio reloj al enviar y recibir la llamada.
+ */
+public final class ClockSample implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Valor de offsetMillis cuando el nodo no conoce la corrección que aplica. */
+    public static final long OFFSET_DESCONOCIDO = Long.MIN_VALUE;
+
+    // Hora del nodo al recibir la petición (t2)
+    private final long receiveMillis;
+    // Hora del nodo al responder (t3)
+    private final long transmitMillis;
+    // Offset total que el nodo aplica actualmente sobre su reloj (OFFSET_DESCONOCIDO si no lo sabe)
+    private final long offsetMillis;
+    private final boolean alive;
+
+    public ClockSample(long receiveMillis, long transmitMillis, long offsetMillis, boolean alive) {
+        this.receiveMillis = receiveMillis;
+        this.transmitMillis = transmitMillis;
+        this.offsetMillis = offsetMillis;
+        this.alive = alive;
+    }
+
+    public long getReceiveMillis() {
+        return receiveMillis;
+    }
+
+    public long getTransmitMillis() {
+        return transmitMillis;
+    }
+
+    public long getOffsetMillis() {
+        return offsetMillis;
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+}
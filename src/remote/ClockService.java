@@ -13,17 +13,61 @@ public interface ClockService extends Remote {
     // Aplica un ajuste (offset en milisegundos). Offset puede ser positivo o negativo.
     void applyAdjustment(long offsetMillis) throws RemoteException;
 
+    // Ajuste etiquetado con la época de la ronda que lo generó, con precisión sub-milisegundo.
+    // Es idempotente: una época ya aplicada se ignora, así que el servidor puede reintentarlo sin
+    // riesgo; una época menor que no se había visto (llega desordenada) sí se aplica.
+    // Devuelve true si se aplicó ahora y false si ya estaba aplicado; ambos son un acuse de recibo.
+    default boolean aplicarAjusteEpoca(long epoca, double ajusteMillis) throws RemoteException {
+        throw new UnsupportedOperationException("Método solo disponible en clientes");
+    }
+
+    // Fija la corrección de frecuencia (ppm) que el nodo aplica entre ajustes; positiva adelanta el reloj.
+    // Es absoluta: sustituye a la anterior en lugar de acumularse.
+    default void applyDriftRate(double ppm) throws RemoteException {
+        throw new UnsupportedOperationException("Método solo disponible en clientes");
+    }
+
+    // Dirección "host:puerto" en la que el nodo atiende muestras por UDP, o null si no usa UDP
+    default String getEndpointUdp() throws RemoteException {
+        return null;
+    }
+
     // Devuelve un identificador del nodo
     String getId() throws RemoteException;
     
     // ⭐ NUEVO: Método para que el servidor verifique que el cliente está activo
     boolean isAlive() throws RemoteException;
+
+    // Muestra completa (t2/t3, offset y salud) en una sola llamada; sustituye a isAlive()+getTimeMillis().
+    // La implementación por defecto solo sirve para nodos locales; los clientes remotos deben sobrescribirla.
+    default ClockSample sample() throws RemoteException {
+        boolean alive = isAlive();
+        long t = getTimeMillis();
+        // Sin conocer su corrección no puede aportar datos al estimador de deriva
+        return new ClockSample(t, t, ClockSample.OFFSET_DESCONOCIDO, alive);
+    }
     
     // ⭐ NUEVO: Método SOLO PARA SERVIDOR - Registrar clientes
     default void registrarCliente(String clientId, ClockService cliente) throws RemoteException {
         throw new UnsupportedOperationException("Método solo disponible en el servidor");
     }
     
+    // Método SOLO PARA SERVIDOR - Latido del cliente para renovar su lease de registro.
+    // Devuelve false si el servidor ya no lo tiene registrado (debe volver a registrarse).
+    default boolean renovarLease(String clientId) throws RemoteException {
+        throw new UnsupportedOperationException("Método solo disponible en el servidor");
+    }
+
+    // Método SOLO PARA SERVIDOR - Recibe el estado que publica un cliente suscrito al monitor
+    default void publicarInstantanea(InstantaneaReloj instantanea) throws RemoteException {
+        throw new UnsupportedOperationException("Método solo disponible en el servidor");
+    }
+
+    // Pide al cliente que publique su estado (publicarInstantanea) en el servidor cada periodoMs; 0 lo detiene
+    default void suscribir(long periodoMs) throws RemoteException {
+        throw new UnsupportedOperationException("Método solo disponible en clientes");
+    }
+
     // ⭐ NUEVO: Método SOLO PARA SERVIDOR - Iniciar sincronización
     default void iniciarSincronizacion() throws RemoteException {
         throw new UnsupportedOperationException("Método solo disponible en el servidor");
@@ -0,0 +1,82 @@
+package remote;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.rmi.RemoteException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Vista de un cliente para el coordinador cuando se usa el transporte UDP: sample() viaja por
+ * UDP y todo lo demás por el stub RMI. Si un datagrama se pierde, sample() lanza
+ * DatagramaPerdidoException para que la muestra se repita por RMI con nuevas marcas de tiempo,
+ * sin confundir una pérdida de paquete con un cliente caído.
+ */
+class ClockServiceUdp implements ClockService {
+    private final ClockService rmi;
+    private final TransporteUdp transporte;
+    private final InetSocketAddress destino;
+
+    ClockServiceUdp(ClockService rmi, TransporteUdp transporte, InetSocketAddress destino) {
+        this.rmi = rmi;
+        this.transporte = transporte;
+        this.destino = destino;
+    }
+
+    @Override
+    public ClockSample sample() throws RemoteException {
+        try {
+            return transporte.muestrear(destino);
+        } catch (TimeoutException | IOException e) {
+            // El tiempo esperado no es RTT: quien mide repite la muestra por RMI con sus propias marcas
+            throw new DatagramaPerdidoException("Muestra UDP perdida de " + destino, rmi);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Muestreo UDP interrumpido", e);
+        }
+    }
+
+    @Override
+    public long getTimeMillis() throws RemoteException {
+        return rmi.getTimeMillis();
+    }
+
+    @Override
+    public void applyAdjustment(long offsetMillis) throws RemoteException {
+        rmi.applyAdjustment(offsetMillis);
+    }
+
+    @Override
+    public boolean aplicarAjusteEpoca(long epoca, double ajusteMillis) throws RemoteException {
+        return rmi.aplicarAjusteEpoca(epoca, ajusteMillis);
+    }
+
+    @Override
+    public void suscribir(long periodoMs) throws RemoteException {
+        rmi.suscribir(periodoMs);
+    }
+
+    @Override
+    public void applyDriftRate(double ppm) throws RemoteException {
+        rmi.applyDriftRate(ppm);
+    }
+
+    @Override
+    public String getId() throws RemoteException {
+        return rmi.getId();
+    }
+
+    @Override
+    public boolean isAlive() throws RemoteException {
+        return rmi.isAlive();
+    }
+
+    @Override
+    public void checkSync(long serverTime) throws RemoteException {
+        rmi.checkSync(serverTime);
+    }
+
+    @Override
+    public String getEndpointUdp() throws RemoteException {
+        return destino.getHostString() + ":" + destino.getPort();
+    }
+}
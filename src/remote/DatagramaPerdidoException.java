@@ -0,0 +1,23 @@
+package remote;
+
+import java.rmi.RemoteException;
+
+/**
+ * La respuesta UDP a una petición de muestra no llegó a tiempo. Quien mide no debe usar el tiempo
+ * transcurrido como RTT: debe repetir la muestra, con nuevas marcas t1/t4, por getAlternativa().
+ */
+public class DatagramaPerdidoException extends RemoteException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ClockService alternativa;
+
+    public DatagramaPerdidoException(String mensaje, ClockService alternativa) {
+        super(mensaje);
+        this.alternativa = alternativa;
+    }
+
+    /** Canal (RMI) por el que repetir la muestra. */
+    public ClockService getAlternativa() {
+        return alternativa;
+    }
+}
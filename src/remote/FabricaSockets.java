@@ -0,0 +1,89 @@
+package remote;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMISocketFactory;
+
+/**
+ * Sockets RMI ajustados para llamadas pequeñas y frecuentes: TCP_NODELAY en ambos extremos
+ * (sin retardo de Nagle dentro del RTT medido), timeout de conexión y timeout de lectura en el
+ * lado que llama, para que un nodo colgado no bloquee una ronda indefinidamente.
+ *
+ * Se instala como fábrica global de la JVM (RMISocketFactory) en lugar de viajar dentro de los
+ * stubs: así los stubs siguen siendo los estándar, los clientes antiguos (que no tienen esta
+ * clase) pueden seguir usando el servidor, y los timeouts los decide quien llama, también
+ * frente a clientes antiguos o exportados con los sockets por defecto.
+ */
+public final class FabricaSockets extends RMISocketFactory {
+    // Margen sobre las tres fases de una ronda (muestras, acuses y derivas) para el timeout de lectura
+    private static final long MARGEN_RONDA_MS = 2_000;
+
+    private final int timeoutConexionMs;
+    private final int timeoutLecturaMs;
+
+    public FabricaSockets(int timeoutConexionMs, int timeoutLecturaMs) {
+        this.timeoutConexionMs = timeoutConexionMs;
+        this.timeoutLecturaMs = timeoutLecturaMs;
+    }
+
+    /**
+     * Instala la fábrica configurada con -Dclock.rmi.timeoutConexionMs (2000) y
+     * -Dclock.rmi.timeoutLecturaMs, salvo que ya haya otra instalada. El timeout de lectura vale para
+     * todas las llamadas salientes, también iniciarSincronizacion(), que espera una ronda entera; por
+     * eso por defecto cubre las tres fases de la ronda (3 x clock.timeoutClienteMs) más un margen.
+     * Además alarga el tiempo
+     * que RMI conserva las conexiones inactivas (-Dclock.rmi.reutilizacionMs, 10 min) para que las
+     * rondas espaciadas no vuelvan a pagar el establecimiento de la conexión. Debe llamarse antes
+     * de exportar objetos o hacer la primera llamada RMI.
+     */
+    public static synchronized void instalar() {
+        if (RMISocketFactory.getSocketFactory() != null) {
+            return;
+        }
+        if (System.getProperty("sun.rmi.transport.connectionTimeout") == null) {
+            System.setProperty("sun.rmi.transport.connectionTimeout",
+                    Long.toString(Long.getLong("clock.rmi.reutilizacionMs", 600_000L)));
+        }
+        try {
+            RMISocketFactory.setSocketFactory(new FabricaSockets(Integer.getInteger("clock.rmi.timeoutConexionMs", 2_000),
+                                                                 Integer.getInteger("clock.rmi.timeoutLecturaMs", timeoutRondaMs())));
+        } catch (IOException e) {
+            System.err.println("No se pudo instalar la fábrica de sockets RMI: " + e.getMessage());
+        }
+    }
+
+    // Lo que puede tardar una ronda: cada fase espera como mucho clock.timeoutClienteMs
+    static int timeoutRondaMs() {
+        long plazoCliente = Long.getLong("clock.timeoutClienteMs", 2_000L);
+        return (int) Math.min(Integer.MAX_VALUE, 3 * plazoCliente + MARGEN_RONDA_MS);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(new InetSocketAddress(host, port), timeoutConexionMs);
+            socket.setSoTimeout(timeoutLecturaMs);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return new ServerSocket(port) {
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = super.accept();
+                socket.setTcpNoDelay(true);
+                return socket;
+            }
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package remote;
+
+import java.io.Serializable;
+
+/**
+ * Estado compacto del reloj de un nodo que el cliente publica periódicamente en el servidor
+ * cuando está suscrito (ver ClockService.suscribir), para que el monitor no tenga que consultarlo.
+ */
+public final class InstantaneaReloj implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String clientId;
+    // Hora objetivo del nodo al publicar (incluye el slew pendiente)
+    private final long horaMillis;
+    // Corrección total aplicada sobre el reloj del sistema
+    private final long correccionMillis;
+    // Parte de la corrección que aún se está aplicando de forma gradual
+    private final double pendienteMillis;
+    private final double derivaPpm;
+
+    public InstantaneaReloj(String clientId, long horaMillis, long correccionMillis, double pendienteMillis, double derivaPpm) {
+        this.clientId = clientId;
+        this.horaMillis = horaMillis;
+        this.correccionMillis = correccionMillis;
+        this.pendienteMillis = pendienteMillis;
+        this.derivaPpm = derivaPpm;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public long getHoraMillis() {
+        return horaMillis;
+    }
+
+    public long getCorreccionMillis() {
+        return correccionMillis;
+    }
+
+    public double getPendienteMillis() {
+        return pendienteMillis;
+    }
+
+    public double getDerivaPpm() {
+        return derivaPpm;
+    }
+}
@@ -0,0 +1,67 @@
+package remote;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Formato binario de los datagramas de muestreo (48 bytes, big-endian):
+ *
+ *   0  magia "CLK1" (int)
+ *   4  tipo: 1 = petición, 2 = respuesta (byte)
+ *   5  vivo (byte, solo en respuestas)
+ *   8  secuencia (long)
+ *   16 t2: hora de recepción del cliente (long, ms)
+ *   24 t3: hora de envío del cliente (long, ms)
+ *   32 offset total del cliente (long, ms)
+ *   40 reservado
+ */
+final class PaqueteUdp {
+    static final int TAMANO = 48;
+    static final int MAGIA = 0x434C4B31;
+    static final byte PETICION = 1;
+    static final byte RESPUESTA = 2;
+
+    private PaqueteUdp() {
+    }
+
+    static void escribirPeticion(ByteBuffer b, long secuencia) {
+        b.clear();
+        b.putInt(0, MAGIA);
+        b.put(4, PETICION);
+        b.put(5, (byte) 0);
+        b.putLong(8, secuencia);
+        b.putLong(16, 0);
+        b.putLong(24, 0);
+        b.putLong(32, 0);
+        b.putLong(40, 0);
+        b.limit(TAMANO);
+    }
+
+    static void escribirRespuesta(ByteBuffer b, long secuencia, ClockSample s) {
+        b.clear();
+        b.putInt(0, MAGIA);
+        b.put(4, RESPUESTA);
+        b.put(5, (byte) (s.isAlive() ? 1 : 0));
+        b.putLong(8, secuencia);
+        b.putLong(16, s.getReceiveMillis());
+        b.putLong(24, s.getTransmitMillis());
+        b.putLong(32, s.getOffsetMillis());
+        b.putLong(40, 0);
+        b.limit(TAMANO);
+    }
+
+    // Devuelve el tipo del paquete recibido, o 0 si no es válido
+    static byte tipo(ByteBuffer b) {
+        if (b.position() != TAMANO || b.getInt(0) != MAGIA) {
+            return 0;
+        }
+        return b.get(4);
+    }
+
+    static long secuencia(ByteBuffer b) {
+        return b.getLong(8);
+    }
+
+    static ClockSample leerRespuesta(ByteBuffer b) {
+        return new ClockSample(b.getLong(16), b.getLong(24), b.getLong(32), b.get(5) != 0);
+    }
+}
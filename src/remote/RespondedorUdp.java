@@ -0,0 +1,69 @@
+package remote;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * Lado cliente del transporte UDP: responde a las peticiones de muestra del coordinador con
+ * el sample() del servicio local. Un solo hilo con Selector y dos buffers directos reutilizados.
+ */
+public class RespondedorUdp implements AutoCloseable {
+    private final ClockService servicio;
+    private final DatagramChannel canal;
+    private final Selector selector;
+
+    public RespondedorUdp(ClockService servicio, int puerto) throws IOException {
+        this.servicio = servicio;
+        this.canal = DatagramChannel.open();
+        canal.bind(new InetSocketAddress(puerto));
+        canal.configureBlocking(false);
+        this.selector = Selector.open();
+        canal.register(selector, SelectionKey.OP_READ);
+
+        Thread hilo = new Thread(this::atender, "udp-respondedor");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    public int getPuerto() throws IOException {
+        return ((InetSocketAddress) canal.getLocalAddress()).getPort();
+    }
+
+    private void atender() {
+        ByteBuffer entrada = ByteBuffer.allocateDirect(PaqueteUdp.TAMANO + 1);
+        ByteBuffer salida = ByteBuffer.allocateDirect(PaqueteUdp.TAMANO);
+        while (canal.isOpen()) {
+            try {
+                selector.select();
+                selector.selectedKeys().clear();
+                while (true) {
+                    entrada.clear();
+                    SocketAddress origen = canal.receive(entrada);
+                    if (origen == null) {
+                        break;
+                    }
+                    if (PaqueteUdp.tipo(entrada) != PaqueteUdp.PETICION) {
+                        continue;
+                    }
+                    PaqueteUdp.escribirRespuesta(salida, PaqueteUdp.secuencia(entrada), servicio.sample());
+                    canal.send(salida, origen);
+                }
+            } catch (IOException e) {
+                if (canal.isOpen()) {
+                    System.err.println("Error en el respondedor UDP: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+        selector.close();
+    }
+}
@@ -0,0 +1,53 @@
+package remote;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.rmi.RemoteException;
+
+/**
+ * Transporte con el que el coordinador habla con cada cliente. RMI es el predeterminado;
+ * con UDP las muestras (sample) viajan en datagramas binarios de tamaño fijo y el resto de
+ * operaciones sigue usando el stub RMI.
+ *
+ * Se elige con -Dclock.transporte=rmi|udp.
+ */
+public interface Transporte {
+
+    /** Devuelve el ClockService con el que se hablará con el cliente a partir de su stub RMI. */
+    ClockService conectar(String clientId, ClockService stubRmi) throws RemoteException;
+
+    String nombre();
+
+    /** Libera los recursos propios del transporte (sockets, hilos). */
+    default void cerrar() {
+    }
+
+    static Transporte rmi() {
+        return new Transporte() {
+            @Override
+            public ClockService conectar(String clientId, ClockService stubRmi) {
+                return stubRmi;
+            }
+
+            @Override
+            public String nombre() {
+                return "rmi";
+            }
+        };
+    }
+
+    static Transporte porNombre(String nombre) {
+        switch (nombre.trim().toLowerCase()) {
+            case "rmi":
+                return rmi();
+            case "udp":
+                try {
+                    return new TransporteUdp(Long.getLong("clock.udp.timeoutMs", 200L));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("No se pudo abrir el transporte UDP", e);
+                }
+            default:
+                throw new IllegalArgumentException("Transporte desconocido: " + nombre);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package remote;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.rmi.RemoteException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lado coordinador del transporte UDP: un único canal no bloqueante para todos los clientes.
+ * Las peticiones se envían desde los hilos de muestreo con buffers directos reutilizados por
+ * hilo, y un hilo con Selector recibe las respuestas y las empareja por número de secuencia.
+ */
+class TransporteUdp implements Transporte {
+
+    /** Petición en espera: solo se acepta la respuesta que llegue desde su destino. */
+    private static final class Pendiente {
+        final SocketAddress destino;
+        final CompletableFuture<ClockSample> futuro = new CompletableFuture<>();
+
+        Pendiente(SocketAddress destino) {
+            this.destino = destino;
+        }
+    }
+
+    private final DatagramChannel canal;
+    private final Selector selector;
+    private final long timeoutMs;
+    // Empieza en un valor aleatorio para que no sea trivial adivinar la secuencia de una petición
+    private final AtomicLong secuencias = new AtomicLong(new SecureRandom().nextLong());
+    private final Map<Long, Pendiente> pendientes = new ConcurrentHashMap<>();
+    private final ThreadLocal<ByteBuffer> buffersEnvio =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(PaqueteUdp.TAMANO));
+
+    TransporteUdp(long timeoutMs) throws IOException {
+        this.timeoutMs = timeoutMs;
+        this.canal = DatagramChannel.open();
+        canal.bind(new InetSocketAddress(0));
+        canal.configureBlocking(false);
+        this.selector = Selector.open();
+        canal.register(selector, SelectionKey.OP_READ);
+
+        Thread receptor = new Thread(this::recibir, "udp-receptor");
+        receptor.setDaemon(true);
+        receptor.start();
+    }
+
+    @Override
+    public ClockService conectar(String clientId, ClockService stubRmi) {
+        try {
+            String endpoint = stubRmi.getEndpointUdp();
+            if (endpoint == null) {
+                return stubRmi;
+            }
+            int separador = endpoint.lastIndexOf(':');
+            InetSocketAddress destino = new InetSocketAddress(endpoint.substring(0, separador),
+                    Integer.parseInt(endpoint.substring(separador + 1)));
+            return new ClockServiceUdp(stubRmi, this, destino);
+        } catch (RemoteException | RuntimeException e) {
+            // Clientes antiguos o sin UDP: se sigue usando RMI
+            return stubRmi;
+        }
+    }
+
+    @Override
+    public String nombre() {
+        return "udp";
+    }
+
+    @Override
+    public void cerrar() {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar el canal UDP: " + e.getMessage());
+        }
+        selector.wakeup();
+    }
+
+    /** Pide una muestra por UDP; lanza TimeoutException si no llega a tiempo (paquete perdido). */
+    ClockSample muestrear(SocketAddress destino) throws IOException, TimeoutException, InterruptedException {
+        long seq = secuencias.incrementAndGet();
+        Pendiente pendiente = new Pendiente(destino);
+        pendientes.put(seq, pendiente);
+        try {
+            ByteBuffer b = buffersEnvio.get();
+            PaqueteUdp.escribirPeticion(b, seq);
+            canal.send(b, destino);
+            return pendiente.futuro.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pendientes.remove(seq);
+        }
+    }
+
+    private void recibir() {
+        ByteBuffer b = ByteBuffer.allocateDirect(PaqueteUdp.TAMANO + 1);
+        while (canal.isOpen()) {
+            try {
+                selector.select();
+                selector.selectedKeys().clear();
+                while (true) {
+                    b.clear();
+                    SocketAddress origen = canal.receive(b);
+                    if (origen == null) {
+                        break;
+                    }
+                    if (PaqueteUdp.tipo(b) != PaqueteUdp.RESPUESTA) {
+                        continue;
+                    }
+                    // Una respuesta de otra dirección se ignora: la petición legítima sigue esperando
+                    long seq = PaqueteUdp.secuencia(b);
+                    Pendiente pendiente = pendientes.get(seq);
+                    if (pendiente != null && pendiente.destino.equals(origen) && pendientes.remove(seq, pendiente)) {
+                        pendiente.futuro.complete(PaqueteUdp.leerRespuesta(b));
+                    }
+                }
+            } catch (IOException e) {
+                if (canal.isOpen()) {
+                    System.err.println("Error en el receptor UDP: " + e.getMessage());
+                }
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // El transporte ya está cerrado
+        }
+    }
+}
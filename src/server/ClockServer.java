@@ -1,14 +1,39 @@
 package server;
 
+import java.lang.management.ManagementFactory;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.server.UnicastRemoteObject;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
+import remote.ClockSample;
 import remote.ClockService;
+import remote.FabricaSockets;
+import remote.InstantaneaReloj;
+import remote.Transporte;
+import util.Log;
+import util.RelojAjustable;
 import util.TimeUtils;
 
 /**
@@ -17,25 +42,208 @@ import util.TimeUtils;
  */
 public class ClockServer extends UnicastRemoteObject implements ClockService {
     private final String id = "server";
-    private long offsetMillis = 0;
+    // Reloj propio del servidor; se corrige igual que el de los clientes (slew monótono).
+    // Arranca con la última corrección registrada en el diario.
+    private final RelojAjustable reloj;
     private final DecimalFormat df = new DecimalFormat("0.00");
     private final Map<String, ClockService> clientesRegistrados = new ConcurrentHashMap<>();
+    // Transporte de las muestras: RMI (predeterminado) o UDP binario
+    private final Transporte transporte = Transporte.porNombre(System.getProperty("clock.transporte", "rmi"));
+    // Ráfaga de muestras por cliente; se conserva la de menor RTT
+    private final EstimadorDesfase estimador =
+            new EstimadorDesfase(this::horaLocalNanos, Integer.getInteger("clock.muestrasPorCliente", 4));
+
+    // Desfases en bruto por cliente para estimar su deriva de frecuencia
+    private final HistorialDeriva historial = new HistorialDeriva(
+            Integer.getInteger("clock.deriva.muestras", 16),
+            Integer.getInteger("clock.deriva.minMuestras", 3),
+            Long.getLong("clock.deriva.minIntervaloMs", 30_000L));
+    // Clientes que no aceptan applyDriftRate(); solo reciben ajustes por pasos
+    private final Set<String> clientesSinDeriva = ConcurrentHashMap.newKeySet();
+    // Última corrección de frecuencia aceptada por cada cliente; no se reenvía si apenas cambia
+    private final Map<String, Double> derivasEnviadas = new ConcurrentHashMap<>();
+    private final double umbralCambioDerivaPpm =
+            Double.parseDouble(System.getProperty("clock.deriva.umbralCambioPpm", "0.05"));
+    // Último estado conocido de cada cliente para el monitor (list/checksync); lo alimentan
+    // las instantáneas que publican los clientes suscritos y las muestras de cada ronda
+    private final Map<String, EstadoCliente> estados = new ConcurrentHashMap<>();
+    // Periodo de las instantáneas que publican los clientes; 0 (por defecto) no los suscribe
+    private final long periodoMonitorMs = Long.getLong("clock.monitor.periodoMs", 0L);
+    // Clientes antiguos sin ajustes por época: reciben applyAdjustment(long) y no se les reintenta
+    private final Set<String> clientesSinEpoca = ConcurrentHashMap.newKeySet();
+    // Época de cada ronda de ajustes; parte de la hora de arranque para seguir creciendo tras un reinicio
+    private final AtomicLong epocas = new AtomicLong(System.currentTimeMillis());
+    private final int reintentosAjuste = Integer.getInteger("clock.ajuste.reintentos", 2);
+
+    // Estrategia con la que se combinan los desfases de cada ronda
+    private volatile EstrategiaAgregacion estrategia =
+            EstrategiaAgregacion.porNombre(System.getProperty("clock.agregacion", "media"));
+
+    // Buffers de la ronda, reutilizados entre sincronizaciones (posición 0 = servidor).
+    // Los desfases se guardan en microsegundos para conservar la precisión sub-ms de las muestras.
+    private String[] idsRonda = new String[16];
+    private long[] desfasesRonda = new long[16];
+    private double[] erroresRonda = new double[16];
+
+    // Plazo máximo (ms) que se espera a cada cliente dentro de una ronda
+    private volatile long timeoutClienteMs = Long.getLong("clock.timeoutClienteMs", 2000L);
+
+    // Hilos para consultar a todos los clientes en paralelo (uno por cliente en vuelo)
+    private final ExecutorService consultas = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "sync-consulta");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Histogramas y contadores de las rondas (JMX y comando 'stats')
+    private final MetricasSincronizacion metricas = new MetricasSincronizacion(clientesRegistrados::size);
+
+    // Solo una ronda a la vez; los disparos que llegan mientras corre se funden en ella
+    private final AtomicBoolean rondaEnCurso = new AtomicBoolean(false);
+
+    // Sincronización periódica con intervalo adaptativo a la deriva observada
+    private final ProgramadorSincronizacion programador = new ProgramadorSincronizacion(
+            this::intentarRonda,
+            Long.getLong("clock.intervaloMs", 10_000L),
+            Long.getLong("clock.intervaloMinMs", 2_000L),
+            Long.getLong("clock.intervaloMaxMs", 300_000L),
+            Long.getLong("clock.umbralEstableMs", 5L),
+            Long.getLong("clock.umbralDerivaMs", 50L));
+
+    // Leases de registro: los clientes los renuevan con latidos y la rueda expira los vencidos
+    private final long leaseMs = Long.getLong("clock.lease.ms", 15_000L);
+    private final RuedaTemporizacion leases = new RuedaTemporizacion(
+            Long.getLong("clock.lease.tickMs", 100L), 512, this::leaseVencido);
+    // Clientes que envían latidos; los que nunca lo hacen (versiones antiguas) no caducan por lease
+    private final Set<String> clientesConLatido = ConcurrentHashMap.newKeySet();
+
+    // Diario de muestras y ajustes para arrancar en caliente (null si está desactivado)
+    private final DiarioDeriva diario;
+
+    // Sockets RMI ajustados (TCP_NODELAY y timeouts) para todo el proceso, antes del primer export
+    static {
+        FabricaSockets.instalar();
+    }
 
     protected ClockServer() throws RemoteException {
+        this(null);
+    }
+
+    /**
+     * Con un reloj compartido el servidor actúa como sub-coordinador dentro de un cliente:
+     * sincroniza a su propio grupo usando el reloj de ese cliente y no lleva diario propio.
+     */
+    public ClockServer(RelojAjustable relojCompartido) throws RemoteException {
         super();
+        if (relojCompartido == null) {
+            double[] correccion = {0};
+            this.diario = abrirDiario(correccion);
+            this.reloj = new RelojAjustable(Math.round(correccion[0]));
+        } else {
+            this.diario = null;
+            this.reloj = relojCompartido;
+        }
+        leases.iniciar();
+    }
+
+    // Reproduce el diario (historial de deriva y corrección del servidor) y lo deja listo para anexar
+    private DiarioDeriva abrirDiario(double[] correccion) {
+        if (!Boolean.parseBoolean(System.getProperty("clock.diario", "true"))) {
+            return null;
+        }
+        Path dir = Paths.get(System.getProperty("clock.diario.dir", "diario"));
+        try {
+            DiarioDeriva d = new DiarioDeriva(dir,
+                    Integer.getInteger("clock.diario.segmentoBytes", 4 << 20),
+                    Integer.getInteger("clock.diario.maxSegmentos", 4),
+                    historial.getCapacidad());
+            Set<String> conocidos = new java.util.HashSet<>();
+            long[] muestras = {0};
+            d.abrir(new DiarioDeriva.Lector() {
+                @Override
+                public void muestra(String clientId, long horaServidor, double desfaseBruto, double rtt) {
+                    historial.registrar(clientId, horaServidor, desfaseBruto);
+                    conocidos.add(clientId);
+                    muestras[0]++;
+                }
+
+                @Override
+                public void ajuste(String clientId, long horaServidor, double ajuste) {
+                }
+
+                @Override
+                public void relojServidor(long horaServidor, double c) {
+                    correccion[0] = c;
+                }
+            });
+            if (muestras[0] > 0) {
+                System.out.println(" 📒 Diario reproducido: " + muestras[0] + " muestras de " + conocidos.size() +
+                                   " clientes, corrección del servidor " + df.format(correccion[0]) + "ms");
+            }
+            return d;
+        } catch (IOException e) {
+            System.err.println("❌ No se pudo abrir el diario en " + dir + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Hora de referencia del servidor para medir desfases (incluye el slew pendiente)
+    private long horaLocal() {
+        return reloj.objetivoMillis();
+    }
+
+    private long horaLocalNanos() {
+        return reloj.objetivoNanos();
+    }
+
+    public EstrategiaAgregacion getEstrategia() {
+        return estrategia;
+    }
+
+    public void setEstrategia(EstrategiaAgregacion estrategia) {
+        this.estrategia = estrategia;
+    }
+
+    // Garantiza capacidad para n participantes sin perder los buffers existentes
+    private void reservarRonda(int n) {
+        if (desfasesRonda.length < n) {
+            int capacidad = Math.max(n, desfasesRonda.length * 2);
+            idsRonda = new String[capacidad];
+            desfasesRonda = new long[capacidad];
+            erroresRonda = new double[capacidad];
+        }
+    }
+
+    public MetricasSincronizacion getMetricas() {
+        return metricas;
+    }
+
+    public long getTimeoutClienteMs() {
+        return timeoutClienteMs;
+    }
+
+    public void setTimeoutClienteMs(long timeoutClienteMs) {
+        this.timeoutClienteMs = timeoutClienteMs;
     }
 
     @Override
     public long getTimeMillis() throws RemoteException {
-        long now = System.currentTimeMillis() + offsetMillis;
-        System.out.println("[Servidor] getTimeMillis() -> " + TimeUtils.fmt(now));
+        long now = reloj.leerMillis();
+        Log.hora(Log.Nivel.DEBUG, "[Servidor] ", "getTimeMillis() -> ", now);
         return now;
     }
 
     @Override
     public void applyAdjustment(long offsetMillis) throws RemoteException {
-        System.out.println("[Servidor] Aplicando ajuste (ms): " + offsetMillis);
-        this.offsetMillis += offsetMillis;
+        ajustarLocal(offsetMillis);
+    }
+
+    @Override
+    public ClockSample sample() throws RemoteException {
+        long recibido = reloj.objetivoMillis();
+        long offset = reloj.correccionMillis();
+        long enviado = reloj.objetivoMillis();
+        return new ClockSample(recibido, enviado, offset, true);
     }
 
     @Override
@@ -50,111 +258,519 @@ public class ClockServer extends UnicastRemoteObject implements ClockService {
     
     // ⭐ IMPLEMENTAR métodos del servidor
     @Override
-    public void registrarCliente(String clientId, ClockService cliente) throws RemoteException {
+    public void registrarCliente(String clientId, ClockService stub) throws RemoteException {
+        ClockService cliente = transporte.conectar(clientId, stub);
+        // El lease va antes que el alta: una expiración anterior pendiente de notificar ya no lo da de baja
+        leases.programar(clientId, leaseMs);
         clientesRegistrados.put(clientId, cliente);
+        estimador.olvidar(clientId);
+        clientesSinDeriva.remove(clientId);
+        // Un cliente que se registra de nuevo puede haber reiniciado su reloj
+        derivasEnviadas.remove(clientId);
+        clientesSinEpoca.remove(clientId);
         System.out.println("✅ Cliente registrado: " + clientId + " (Total: " + clientesRegistrados.size() + ")");
+
+        // Precalentado: abre la conexión al stub ahora para que la primera muestra no pague su establecimiento
+        consultas.execute(() -> precalentar(cliente));
+        if (periodoMonitorMs > 0) {
+            consultas.execute(() -> suscribirMonitor(clientId, cliente));
+        }
+
+        // Arranque en caliente: si ya se conoce su deriva (p. ej. por el diario), se envía de inmediato
+        double ppm = historial.derivaPpm(clientId);
+        if (!Double.isNaN(ppm) && ppm != 0) {
+            consultas.execute(() -> enviarDeriva(clientId, cliente, reloj.getDerivaPpm() - ppm));
+        }
     }
     
+    private static void precalentar(ClockService cliente) {
+        try {
+            cliente.isAlive();
+        } catch (RemoteException e) {
+            // Si no responde se verá en la próxima ronda
+        }
+    }
+
+    private void suscribirMonitor(String clientId, ClockService cliente) {
+        try {
+            cliente.suscribir(periodoMonitorMs);
+        } catch (UnsupportedOperationException | RemoteException e) {
+            // Clientes antiguos: el monitor solo verá el estado de las rondas
+            Log.texto(Log.Nivel.DEBUG, "Cliente sin suscripción al monitor: ", clientId);
+        }
+    }
+
+    @Override
+    public void publicarInstantanea(InstantaneaReloj instantanea) throws RemoteException {
+        String clientId = instantanea.getClientId();
+        if (!clientesRegistrados.containsKey(clientId)) {
+            return;
+        }
+        long ahora = System.nanoTime();
+        // La hora de la instantánea lleva la latencia de ida sin medir: el desfase sigue siendo el de la ronda
+        estados.compute(clientId, (k, previo) -> previo == null
+                ? new EstadoCliente(Double.NaN, Double.NaN, 0, 0, ahora, ahora, instantanea.getCorreccionMillis(),
+                                    instantanea.getPendienteMillis(), instantanea.getDerivaPpm())
+                : new EstadoCliente(previo.desfase, previo.error, previo.correccionServidor, previo.ajusteConfirmado,
+                                    previo.medidoNanos, ahora, instantanea.getCorreccionMillis(),
+                                    instantanea.getPendienteMillis(), instantanea.getDerivaPpm()));
+        // Publicar también demuestra que el cliente sigue vivo
+        leases.renovar(clientId, leaseMs);
+    }
+
+    @Override
+    public boolean renovarLease(String clientId) throws RemoteException {
+        if (!clientesRegistrados.containsKey(clientId)) {
+            return false;
+        }
+        clientesConLatido.add(clientId);
+        leases.programar(clientId, leaseMs);
+        return true;
+    }
+
+    private void leaseVencido(String clientId) {
+        // Si se registró de nuevo tras vencer (ya tiene otro lease) no se le da de baja
+        if (clientesConLatido.contains(clientId) && leases.siSinLease(clientId, () -> darDeBaja(clientId))) {
+            Log.texto(Log.Nivel.WARN, "⌛ Lease vencido, cliente dado de baja: ", clientId);
+        }
+        // Sin latidos nunca: cliente antiguo, sigue registrado y se da de baja si falla en una ronda
+    }
+
+    private void darDeBaja(String clientId) {
+        clientesRegistrados.remove(clientId);
+        clientesConLatido.remove(clientId);
+        estados.remove(clientId);
+        derivasEnviadas.remove(clientId);
+        metricas.olvidar(clientId);
+        historial.olvidar(clientId);
+        leases.cancelar(clientId);
+    }
+
     @Override
     public void iniciarSincronizacion() throws RemoteException {
         System.out.println("\n🎯 Iniciando sincronización por solicitud...");
         sincronizar();
     }
 
-    // Método de sincronización (igual que antes)
+    // Método de sincronización. Si ya hay una ronda en curso, el disparo se funde con ella.
     public void sincronizar() {
+        intentarRonda();
+    }
+
+    // Ejecuta una ronda si no hay otra en curso. Devuelve la mayor corrección enviada (ms)
+    // o NaN si no se ejecutó ninguna.
+    private double intentarRonda() {
+        if (!rondaEnCurso.compareAndSet(false, true)) {
+            System.out.println("  Ya hay una sincronización en curso; se usa esa ronda.");
+            return Double.NaN;
+        }
+        try {
+            return ronda();
+        } finally {
+            rondaEnCurso.set(false);
+        }
+    }
+
+    public void iniciarSincronizacionPeriodica() {
+        programador.iniciar();
+    }
+
+    public void detenerSincronizacionPeriodica() {
+        programador.detener();
+    }
+
+    /**
+     * Apaga el coordinador dentro del proceso: deja de sincronizar, libera sus hilos, cierra el
+     * diario y el transporte y deja de atender llamadas RMI. Los clientes no se avisan.
+     */
+    public void cerrar() {
+        programador.cerrar();
+        leases.cerrar();
+        consultas.shutdownNow();
+        transporte.cerrar();
+        if (diario != null) {
+            try {
+                diario.close();
+            } catch (IOException e) {
+                Log.texto(Log.Nivel.WARN, "No se pudo cerrar el diario: ", e.getMessage());
+            }
+        }
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // Ya no estaba exportado
+        }
+    }
+
+    // Solo la ejecuta un hilo a la vez (ver intentarRonda), por eso puede reutilizar los buffers
+    private double ronda() {
         try {
             if (clientesRegistrados.isEmpty()) {
                 System.out.println("  No hay clientes registrados para sincronizar.");
-                return;
+                return Double.NaN;
             }
 
-            Map<String, Long> tiempos = new java.util.HashMap<>();
-            Map<String, Long> desfases = new java.util.HashMap<>();
+            long inicioRonda = System.nanoTime();
+            int omitidos = 0;
 
-            long tiempoServidor = getTimeMillis();
-            tiempos.put(id, tiempoServidor);
-            desfases.put(id, 0L);
+            // Instante de referencia común para todas las muestras de la ronda
+            long tiempoServidor = horaLocal();
+            long offsetServidor = reloj.correccionMillis();
+            double correccionServidor = reloj.correccionExactaMillis();
+            // Ancla común (con fracción de ms) de la que todas las ráfagas derivan sus t1/t4
+            EstimadorDesfase.Ancla ancla = estimador.anclar();
 
-            // Solicitar tiempo a clientes registrados
+            // Consultar a todos los clientes a la vez; la ronda dura lo que tarde el más lento
+            Map<String, Future<Muestra>> pendientes = new LinkedHashMap<>();
             for (Map.Entry<String, ClockService> entry : clientesRegistrados.entrySet()) {
                 String clientId = entry.getKey();
                 ClockService cliente = entry.getValue();
-                
+                pendientes.put(clientId, consultas.submit(() -> medir(clientId, cliente, ancla)));
+            }
+
+            reservarRonda(pendientes.size() + 1);
+            String[] ids = idsRonda;
+            long[] desfases = desfasesRonda;
+            double[] errores = erroresRonda;
+            ids[0] = id;
+            desfases[0] = 0;
+            errores[0] = 0;
+            int n = 1;
+
+            long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutClienteMs);
+            for (Map.Entry<String, Future<Muestra>> entry : pendientes.entrySet()) {
+                String clientId = entry.getKey();
+                Future<Muestra> futuro = entry.getValue();
+
                 try {
-                    if (!cliente.isAlive()) {
+                    Muestra m = futuro.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (m == null) {
                         System.err.println("Cliente " + clientId + " no responde, removiendo...");
-                        clientesRegistrados.remove(clientId);
+                        darDeBaja(clientId);
+                        omitidos++;
                         continue;
                     }
-                    
-                    long inicio = System.currentTimeMillis();
-                    long horaCliente = cliente.getTimeMillis();
-                    long fin = System.currentTimeMillis();
 
-                    long rtt = fin - inicio;
-                    long horaAjustada = horaCliente + (rtt / 2);
-                    tiempos.put(clientId, horaAjustada);
-
-                    long desfase = horaAjustada - tiempoServidor;
-                    desfases.put(clientId, desfase);
-
-                    System.out.println(" " + clientId + " - Hora: " + TimeUtils.fmt(horaCliente) + 
-                                     ", RTT: " + rtt + "ms, Desfase: " + desfase + "ms");
+                    // Desfase sin las correcciones de ambos lados: solo queda la deriva entre relojes
+                    if (m.offsetCliente != Muestra.SIN_OFFSET) {
+                        long horaBruta = reloj.brutoMillis();
+                        double desfaseBruto = m.desfase - m.offsetCliente + offsetServidor;
+                        historial.registrar(clientId, horaBruta, desfaseBruto);
+                        if (diario != null) {
+                            diario.muestra(clientId, horaBruta, desfaseBruto, m.rtt);
+                        }
+                    }
 
-                } catch (Exception e) {
-                    System.err.println(" Error al contactar con " + clientId + ": " + e.getMessage());
-                    clientesRegistrados.remove(clientId);
+                    metricas.registrarMuestra(clientId, m.rtt, m.desfase);
+                    // Una respuesta válida también demuestra que el cliente sigue vivo
+                    leases.renovar(clientId, leaseMs);
+                    actualizarEstado(clientId, m, correccionServidor);
+
+                    ids[n] = clientId;
+                    desfases[n] = Math.round(m.desfase * 1000);
+                    errores[n] = m.error;
+                    n++;
+
+                    System.out.println(" " + clientId + " - Hora: " + TimeUtils.fmt(m.horaCliente) +
+                                     ", RTT: " + df.format(m.rtt) + "ms, Desfase: " + df.format(m.desfase) +
+                                     "ms ±" + df.format(m.error) + "ms");
+
+                } catch (TimeoutException e) {
+                    // Cliente lento: se excluye solo de esta ronda, sigue registrado
+                    futuro.cancel(true);
+                    omitidos++;
+                    System.err.println(" ⏱ " + clientId + " excedió el plazo de " + timeoutClienteMs +
+                                       "ms, se omite en esta ronda");
+                } catch (ExecutionException e) {
+                    System.err.println(" Error al contactar con " + clientId + ": " + e.getCause().getMessage());
+                    darDeBaja(clientId);
+                    omitidos++;
+                } catch (InterruptedException e) {
+                    // Aún no se ha ajustado nada: se abandona la ronda sin tocar ningún reloj
+                    for (Future<Muestra> f : pendientes.values()) {
+                        f.cancel(true);
+                    }
+                    Arrays.fill(ids, 0, n, null);
+                    Thread.currentThread().interrupt();
+                    System.err.println("⚠️ Ronda interrumpida durante la toma de muestras; no se envía ningún ajuste");
+                    return Double.NaN;
                 }
             }
 
-            // Mostrar tabla de desfases
+            // Mostrar tabla de desfases (hora de cada nodo proyectada al instante de referencia)
             System.out.println("\n=== TABLA DE ENTRADA Y DESFASE ===");
-            for (String k : tiempos.keySet()) {
-                System.out.println(k + "\tHora(ms): " + tiempos.get(k) + "\tDesfase(ms): " + desfases.get(k));
+            for (int i = 0; i < n; i++) {
+                System.out.println(ids[i] + "\tHora(ms): " + (tiempoServidor + Math.round(desfases[i] / 1000.0)) +
+                                   "\tDesfase(ms): " + df.format(desfases[i] / 1000.0) +
+                                   "\tError(ms): ±" + df.format(errores[i]));
             }
 
-            // Calcular promedio de desfases
-            double suma = 0;
-            for (long d : desfases.values()) {
-                suma += d;
-            }
-            double promedio = suma / desfases.size();
+            // Calcular el desfase de consenso con la estrategia configurada
+            EstrategiaAgregacion agregacion = estrategia;
+            double promedio = agregacion.agregar(desfases, n) / 1000;
 
-            System.out.println("\n📊 Promedio de desfases: " + df.format(promedio) + " ms");
+            System.out.println("\n📊 Promedio de desfases (" + agregacion.nombre() + "): " + df.format(promedio) + " ms");
 
-            // Enviar ajustes
+            // Enviar ajustes: en paralelo, etiquetados con la época de la ronda y con acuse de recibo
             System.out.println("\n=== TABLA DE PROMEDIO Y AJUSTE ===");
-            for (String k : desfases.keySet()) {
-                double ajuste = promedio - desfases.get(k);
-                System.out.println(k + "\tDesfase: " + desfases.get(k) + "\tAjuste: " + df.format(ajuste));
-
-                if (!k.equals(id)) {
-                    try {
-                        ClockService cliente = clientesRegistrados.get(k);
-                        if (cliente != null) {
-                            cliente.applyAdjustment((long) ajuste);
-                            System.out.println("✅ Ajuste enviado a " + k + ": " + df.format(ajuste) + "ms");
+            long epoca = epocas.incrementAndGet();
+            List<Future<Boolean>> acuses = new ArrayList<>(n);
+            double maxAjuste = 0;
+            for (int i = 0; i < n; i++) {
+                String k = ids[i];
+                double ajuste = promedio - desfases[i] / 1000.0;
+                maxAjuste = Math.max(maxAjuste, Math.abs(ajuste));
+                System.out.println(k + "\tDesfase: " + df.format(desfases[i] / 1000.0) + "\tAjuste: " + df.format(ajuste));
+
+                ClockService cliente = i > 0 ? clientesRegistrados.get(k) : null;
+                acuses.add(cliente != null ? consultas.submit(() -> enviarAjuste(k, cliente, epoca, ajuste)) : null);
+            }
+            ajustarLocal(promedio);
+
+            boolean interrumpida = false;
+            limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutClienteMs);
+            for (int i = 1; i < n; i++) {
+                Future<Boolean> acuse = acuses.get(i);
+                if (acuse == null) {
+                    continue;
+                }
+                String k = ids[i];
+                double ajuste = promedio - desfases[i] / 1000.0;
+                boolean confirmado;
+                try {
+                    confirmado = acuse.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    // Sigue en curso; si llega tarde la época evita que se aplique dos veces
+                    System.err.println(" ⏱ " + k + " no confirmó el ajuste en " + timeoutClienteMs + "ms");
+                    confirmado = false;
+                } catch (ExecutionException e) {
+                    confirmado = false;
+                } catch (InterruptedException e) {
+                    // El servidor ya se ajustó: los envíos en curso terminan por su cuenta (la época los
+                    // hace idempotentes) y solo se descartan los que aún no hayan empezado
+                    for (int j = i; j < n; j++) {
+                        if (acuses.get(j) != null) {
+                            acuses.get(j).cancel(false);
                         }
-                    } catch (Exception e) {
-                        System.err.println("❌ Error enviando ajuste a " + k + ": " + e.getMessage());
+                    }
+                    interrumpida = true;
+                    break;
+                }
+                if (confirmado) {
+                    System.out.println("✅ Ajuste enviado a " + k + ": " + df.format(ajuste) + "ms");
+                    if (diario != null) {
+                        diario.ajuste(k, reloj.brutoMillis(), ajuste);
                     }
                 } else {
-                    applyAdjustment((long) ajuste);
+                    metricas.registrarFalloAjuste();
                 }
             }
+            if (!interrumpida) {
+                enviarDerivas(ids, n);
+            }
+            if (diario != null) {
+                diario.relojServidor(reloj.brutoMillis(), reloj.correccionMillis());
+            }
+
+            // No retener referencias a clientes dados de baja entre rondas
+            Arrays.fill(ids, 0, n, null);
 
             // Mostrar nueva hora del servidor
             System.out.println("\n=== TABLA DE NUEVA HORA ===");
-            long nuevaHoraServidor = System.currentTimeMillis() + offsetMillis;
+            long nuevaHoraServidor = reloj.objetivoMillis();
             System.out.println("Servidor\tAjuste(ms): " + df.format(promedio - 0) +
                     "\tNueva hora: " + TimeUtils.fmt(nuevaHoraServidor));
+            metricas.registrarRonda(System.nanoTime() - inicioRonda, omitidos);
+            if (interrumpida) {
+                Thread.currentThread().interrupt();
+                System.err.println("⚠️ Ronda interrumpida esperando acuses; no se envían correcciones de deriva");
+            }
+            return maxAjuste;
 
         } catch (Exception e) {
             e.printStackTrace();
+            return Double.NaN;
+        }
+    }
+
+    private void ajustarLocal(double ajusteMillis) {
+        reloj.ajustar(ajusteMillis);
+        Log.valor(Log.Nivel.INFO, "[Servidor] ", "Aplicando ajuste (ms): ", ajusteMillis);
+    }
+
+    /**
+     * Envía un ajuste etiquetado con su época y devuelve true cuando el cliente lo confirma.
+     * Los reintentos son seguros porque el cliente descarta las épocas ya aplicadas; a los clientes
+     * antiguos se les envía applyAdjustment(long) una sola vez, ya que ahí un reintento podría duplicarlo.
+     */
+    private boolean enviarAjuste(String k, ClockService cliente, long epoca, double ajuste) {
+        if (clientesSinEpoca.contains(k)) {
+            return enviarAjusteAntiguo(k, cliente, ajuste);
+        }
+        Exception error = null;
+        for (int intento = 0; intento <= reintentosAjuste; intento++) {
+            try {
+                cliente.aplicarAjusteEpoca(epoca, ajuste);
+                registrarAjusteConfirmado(k, ajuste);
+                return true;
+            } catch (UnsupportedOperationException | RemoteException e) {
+                if (Compatibilidad.metodoNoSoportado(e)) {
+                    clientesSinEpoca.add(k);
+                    return enviarAjusteAntiguo(k, cliente, ajuste);
+                }
+                error = e;
+            }
+            try {
+                Thread.sleep(50L << intento);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        System.err.println("❌ Error enviando ajuste a " + k + ": " + (error != null ? error.getMessage() : "interrumpido"));
+        return false;
+    }
+
+    private boolean enviarAjusteAntiguo(String k, ClockService cliente, double ajuste) {
+        try {
+            cliente.applyAdjustment(Math.round(ajuste));
+            registrarAjusteConfirmado(k, Math.round(ajuste));
+            return true;
+        } catch (Exception e) {
+            System.err.println("❌ Error enviando ajuste a " + k + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Envía a cada cliente la corrección de frecuencia que compensa su deriva estimada
+    private void enviarDerivas(String[] ids, int n) {
+        boolean cabecera = false;
+        List<Future<?>> envios = new ArrayList<>();
+        for (int i = 1; i < n; i++) {
+            String k = ids[i];
+            double ppm = historial.derivaPpm(k);
+            if (Double.isNaN(ppm) || clientesSinDeriva.contains(k)) {
+                continue;
+            }
+            // Relativa al reloj corregido de este nodo (en un sub-coordinador puede tener su propia tasa)
+            double correccion = reloj.getDerivaPpm() - ppm;
+            Double enviada = derivasEnviadas.get(k);
+            if (enviada != null && Math.abs(enviada - correccion) < umbralCambioDerivaPpm) {
+                continue;
+            }
+            if (!cabecera) {
+                System.out.println("\n=== TABLA DE DERIVA ===");
+                cabecera = true;
+            }
+            System.out.println(k + "\tDeriva(ppm): " + df.format(ppm) + "\tCorrección(ppm): " + df.format(correccion));
+
+            ClockService cliente = clientesRegistrados.get(k);
+            if (cliente != null) {
+                envios.add(consultas.submit(() -> enviarDeriva(k, cliente, correccion)));
+            }
+        }
+
+        // Mismo plazo que las muestras; un envío que no termine a tiempo sigue en segundo plano
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutClienteMs);
+        for (Future<?> envio : envios) {
+            try {
+                envio.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                System.err.println(" ⏱ Hay correcciones de deriva sin confirmar tras " + timeoutClienteMs + "ms");
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // enviarDeriva ya informa de sus errores
+            }
+        }
+    }
+
+    // Solo se recuerda la corrección si el cliente la aceptó; si falla se reenvía en la próxima ronda
+    private void enviarDeriva(String k, ClockService cliente, double correccion) {
+        try {
+            cliente.applyDriftRate(correccion);
+            derivasEnviadas.put(k, correccion);
+        } catch (UnsupportedOperationException | RemoteException e) {
+            derivasEnviadas.remove(k);
+            // Clientes antiguos rechazan el método; el resto de errores se reintenta la próxima ronda
+            if (Compatibilidad.metodoNoSoportado(e)) {
+                clientesSinDeriva.add(k);
+            } else {
+                System.err.println("❌ Error enviando deriva a " + k + ": " + e.getMessage());
+            }
         }
     }
 
+    /**
+     * Reenvía a todos los clientes registrados un ajuste recibido de un coordinador superior,
+     * para que el grupo se mueva junto con este nodo. No espera a las respuestas.
+     */
+    public void difundirAjuste(double ajuste) {
+        long epoca = epocas.incrementAndGet();
+        for (Map.Entry<String, ClockService> entry : clientesRegistrados.entrySet()) {
+            String k = entry.getKey();
+            ClockService cliente = entry.getValue();
+            consultas.execute(() -> {
+                if (!enviarAjuste(k, cliente, epoca, ajuste)) {
+                    metricas.registrarFalloAjuste();
+                }
+            });
+        }
+    }
+
+    // Vuelca en el monitor una muestra de ronda, que tiene mejor cota de error que una instantánea
+    private void actualizarEstado(String clientId, Muestra m, double correccionServidor) {
+        long ahora = System.nanoTime();
+        estados.compute(clientId, (k, previo) -> new EstadoCliente(m.desfase, m.error, correccionServidor, 0,
+                ahora, ahora,
+                m.offsetCliente != Muestra.SIN_OFFSET ? m.offsetCliente : previo != null ? previo.correccion : 0,
+                previo != null ? previo.pendiente : Double.NaN, previo != null ? previo.derivaPpm : Double.NaN));
+    }
+
+    // El cliente aplicó el ajuste después de la medición: el monitor lo descuenta del desfase medido
+    private void registrarAjusteConfirmado(String clientId, double ajuste) {
+        estados.computeIfPresent(clientId, (k, e) -> e.conAjuste(ajuste));
+    }
+
+    // Muestra el último estado conocido de cada cliente sin hacer ninguna llamada remota
+    private void imprimirEstado() {
+        long horaServidor = reloj.leerMillis();
+        double correccionServidor = reloj.correccionExactaMillis();
+        long ahora = System.nanoTime();
+        System.out.println("Servidor -> " + TimeUtils.fmt(horaServidor) + " (ms=" + horaServidor + ")");
+        for (String k : clientesRegistrados.keySet()) {
+            EstadoCliente e = estados.get(k);
+            if (e == null) {
+                System.out.println(" - " + k + " -> sin datos todavía");
+                continue;
+            }
+            String hora;
+            if (Double.isNaN(e.desfase)) {
+                hora = "sin medir todavía";
+            } else {
+                double desfase = e.desfaseActual(correccionServidor);
+                long horaCliente = horaServidor + Math.round(desfase);
+                hora = TimeUtils.fmt(horaCliente) + " (ms=" + horaCliente + ") Desfase=" + df.format(desfase) +
+                       "ms ±" + df.format(e.error) + "ms (medido hace " + edadMs(ahora, e.medidoNanos) + "ms)";
+            }
+            System.out.println(" - " + k + " -> " + hora +
+                               (Double.isNaN(e.pendiente) ? "" : " Pendiente=" + df.format(e.pendiente) + "ms") +
+                               (Double.isNaN(e.derivaPpm) ? "" : " Deriva=" + df.format(e.derivaPpm) + "ppm") +
+                               " (visto hace " + edadMs(ahora, e.vistoNanos) + "ms)");
+        }
+    }
+
+    private static long edadMs(long ahoraNanos, long desdeNanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(ahoraNanos - desdeNanos));
+    }
+
+    // Mide un cliente con una ráfaga de muestras. Devuelve null si el cliente indica que no está activo.
+    private Muestra medir(String clientId, ClockService cliente, EstimadorDesfase.Ancla ancla) throws RemoteException {
+        return estimador.estimar(clientId, cliente, ancla);
+    }
+
     public static void main(String[] args) {
         try {
             ClockServer server = new ClockServer();
@@ -166,9 +782,17 @@ public class ClockServer extends UnicastRemoteObject implements ClockService {
             String url = "rmi://" + hostAddress + ":" + port + "/ClockServer";
             Naming.rebind(url, server);
             System.out.println(" Servidor registrado en RMIRegistry como 'ClockServer'");
+
+            ManagementFactory.getPlatformMBeanServer().registerMBean(server.metricas,
+                    new ObjectName("javaclock:type=ClockServer,name=Metricas"));
             System.out.println(" URL de conexión para clientes: " + url);
             System.out.println(" Esperando registro de clientes...");
 
+            if (Boolean.getBoolean("clock.auto")) {
+                server.iniciarSincronizacionPeriodica();
+                System.out.println(" Sincronización periódica activa (intervalo inicial: " + server.programador.getIntervaloMs() + "ms)");
+            }
+
             // Menu interactivo simple para administrar sincronizaciones y clientes
             java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.InputStreamReader(System.in));
             String line = null;
@@ -187,61 +811,57 @@ public class ClockServer extends UnicastRemoteObject implements ClockService {
                         server.sincronizar();
                     } else if (cmd.equalsIgnoreCase("list") || cmd.equalsIgnoreCase("ls")) {
                         System.out.println("Clientes registrados: " + server.clientesRegistrados.size());
-                        // Mostrar hora del servidor
-                        long horaServidor = System.currentTimeMillis() + server.offsetMillis;
-                        System.out.println("Servidor -> " + TimeUtils.fmt(horaServidor) + " (ms=" + horaServidor + ")");
-
-                        for (String k : server.clientesRegistrados.keySet()) {
-                            ClockService cliente = server.clientesRegistrados.get(k);
-                            try {
-                                long inicio = System.currentTimeMillis();
-                                long horaCliente = cliente.getTimeMillis();
-                                long fin = System.currentTimeMillis();
-                                long rtt = fin - inicio;
-                                long horaAjustada = horaCliente + (rtt / 2);
-                                System.out.println(" - " + k + " -> " + TimeUtils.fmt(horaAjustada) + " (ms=" + horaAjustada + ") RTT=" + rtt + "ms");
-                            } catch (Exception e) {
-                                System.out.println(" - " + k + " -> no responde: " + e.getMessage());
-                            }
-                        }
+                        server.imprimirEstado();
                     } else if (cmd.startsWith("remove ") || cmd.startsWith("rm ")) {
                         String[] parts = cmd.split("\\s+", 2);
                         if (parts.length > 1) {
                             String idToRemove = parts[1].trim();
-                            server.clientesRegistrados.remove(idToRemove);
+                            server.darDeBaja(idToRemove);
                             System.out.println("Cliente removido: " + idToRemove);
                         } else {
                             System.out.println("Uso: remove <clientId>");
                         }
+                    } else if (cmd.equalsIgnoreCase("agg") || cmd.startsWith("agg ")) {
+                        String[] parts = cmd.split("\\s+", 2);
+                        if (parts.length > 1) {
+                            server.setEstrategia(EstrategiaAgregacion.porNombre(parts[1]));
+                        }
+                        System.out.println("Estrategia de agregación: " + server.getEstrategia().nombre());
+                    } else if (cmd.equalsIgnoreCase("muestras") || cmd.startsWith("muestras ")) {
+                        String[] parts = cmd.split("\\s+", 2);
+                        if (parts.length > 1) {
+                            server.estimador.setMuestrasPorCliente(Integer.parseInt(parts[1].trim()));
+                        }
+                        System.out.println("Muestras por cliente y ronda: " + server.estimador.getMuestrasPorCliente());
+                    } else if (cmd.equalsIgnoreCase("auto") || cmd.startsWith("auto ")) {
+                        String[] parts = cmd.split("\\s+", 2);
+                        if (parts.length > 1 && parts[1].equalsIgnoreCase("on")) {
+                            server.iniciarSincronizacionPeriodica();
+                        } else if (parts.length > 1 && parts[1].equalsIgnoreCase("off")) {
+                            server.detenerSincronizacionPeriodica();
+                        }
+                        System.out.println("Sincronización periódica: " + (server.programador.isActivo() ? "activa" : "inactiva") +
+                                           " (intervalo actual: " + server.programador.getIntervaloMs() + "ms)");
+                    } else if (cmd.equalsIgnoreCase("stats")) {
+                        System.out.print(server.metricas.resumen());
+                    } else if (cmd.startsWith("stats ")) {
+                        System.out.println(server.metricas.resumenCliente(cmd.substring(6).trim()));
                     } else if (cmd.equalsIgnoreCase("clear")) {
-                        server.clientesRegistrados.clear();
+                        for (String k : server.clientesRegistrados.keySet()) {
+                            server.darDeBaja(k);
+                        }
                         System.out.println("Lista de clientes limpiada.");
                     } else if (cmd.equalsIgnoreCase("checksync") || cmd.equalsIgnoreCase("c")) {
                         System.out.println("Iniciando CheckSync: imprimirá cada segundo. Presiona 'q' y Enter para detener.");
                         // bandera para detener
                         final java.util.concurrent.atomic.AtomicBoolean stopFlag = new java.util.concurrent.atomic.AtomicBoolean(false);
 
-                        // Bucle que imprime cada segundo y manda checkSync a clientes
+                        // Bucle que imprime cada segundo el último estado publicado por los clientes (sin llamadas remotas)
                         while (!stopFlag.get()) {
-                            long horaServidorCS = System.currentTimeMillis() + server.offsetMillis;
+                            long horaServidorCS = server.reloj.leerMillis();
                             System.out.println("\n---- CheckSync Start: " + TimeUtils.fmt(horaServidorCS) + " ----");
 
-                            System.out.println("Servidor -> " + TimeUtils.fmt(horaServidorCS) + " (ms=" + horaServidorCS + ")");
-                            for (String k : server.clientesRegistrados.keySet()) {
-                                ClockService cliente = server.clientesRegistrados.get(k);
-                                try {
-                                    long inicio = System.currentTimeMillis();
-                                    long horaCliente = cliente.getTimeMillis();
-                                    long fin = System.currentTimeMillis();
-                                    long rtt = fin - inicio;
-                                    long horaAjustada = horaCliente + (rtt / 2);
-                                    System.out.println(" - " + k + " -> " + TimeUtils.fmt(horaAjustada) + " (ms=" + horaAjustada + ") RTT=" + rtt + "ms");
-                                    // Notificar al cliente para que imprima su propio check
-                                    // No se notifica al cliente: cada cliente muestra su propio reloj local dinámico.
-                                } catch (Exception e) {
-                                    System.out.println(" - " + k + " -> no responde: " + e.getMessage());
-                                }
-                            }
+                            server.imprimirEstado();
 
                             System.out.println("---- CheckSync End ----\n");
 
@@ -287,6 +907,10 @@ public class ClockServer extends UnicastRemoteObject implements ClockService {
         System.out.println("  help|h        - Mostrar esta ayuda");
         System.out.println("  sync|s        - Iniciar sincronizacion ahora");
         System.out.println("  list|ls       - Listar clientes registrados");
+        System.out.println("  auto [on|off] - Ver/activar/detener la sincronizacion periodica adaptativa");
+        System.out.println("  stats [id]    - Metricas de sincronizacion (RTT, desfase, duracion de rondas) o de un cliente");
+        System.out.println("  agg [nombre]  - Ver/cambiar agregacion (media, recortada, mediana, tolerante)");
+        System.out.println("  muestras [n]  - Ver/cambiar las muestras por cliente de cada rafaga (se usa la de menor RTT)");
         System.out.println("  Check|c       - Mostrar horas de clientes cada segundo (presiona 'q' para parar)");
 
     }
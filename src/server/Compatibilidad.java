@@ -0,0 +1,22 @@
+package server;
+
+import java.rmi.ServerException;
+import java.rmi.UnmarshalException;
+
+/**
+ * Detección de clientes que no implementan un método de ClockService.
+ */
+final class Compatibilidad {
+    private Compatibilidad() {
+    }
+
+    /**
+     * true si la llamada falló porque el nodo no implementa el método: un cliente compilado con una
+     * versión anterior de ClockService rechaza el hash del método nuevo (ServerException con causa
+     * UnmarshalException), y una implementación que no lo sobrescribe lanza UnsupportedOperationException.
+     */
+    static boolean metodoNoSoportado(Exception e) {
+        return e instanceof UnsupportedOperationException
+                || e instanceof ServerException && e.getCause() instanceof UnmarshalException;
+    }
+}
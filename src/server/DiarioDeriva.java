@@ -0,0 +1,339 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import util.Log;
+
+/**
+ * Diario binario de solo-anexar, en segmentos mapeados en memoria, con las muestras y ajustes
+ * de cada ronda. Al arrancar, el servidor lo reproduce para reconstruir el historial de deriva
+ * de cada cliente y la corrección de su propio reloj. Un hilo en segundo plano compacta los
+ * segmentos antiguos conservando solo las últimas muestras de cada cliente.
+ *
+ * Registro de tamaño fijo (64 bytes):
+ *   0  tipo (byte, se escribe el último: 0 = fin de datos)
+ *   1  longitud del id (byte)
+ *   8  hora bruta del servidor (long, ms)
+ *   16 valor principal (double)
+ *   24 valor secundario (double)
+ *   32 id del cliente (UTF-8, hasta 32 bytes)
+ */
+class DiarioDeriva implements AutoCloseable {
+    static final int TAMANO_REGISTRO = 64;
+    private static final int MAX_ID = 32;
+
+    static final byte MUESTRA = 1;
+    static final byte AJUSTE = 2;
+    static final byte RELOJ_SERVIDOR = 3;
+
+    private static final String PREFIJO = "segmento-";
+    private static final String SUFIJO = ".dat";
+
+    /** Receptor de los registros durante la reproducción. */
+    interface Lector {
+        // Desfase bruto de un cliente (sin correcciones) y RTT de la muestra
+        void muestra(String clientId, long horaServidor, double desfaseBruto, double rtt);
+
+        void ajuste(String clientId, long horaServidor, double ajuste);
+
+        // Corrección total del reloj del servidor tras una ronda
+        void relojServidor(long horaServidor, double correccion);
+    }
+
+    private final Path directorio;
+    private final int tamanoSegmento;
+    private final int maxSegmentos;
+    private final int muestrasPorCliente;
+
+    private FileChannel canal;
+    private MappedByteBuffer activo;
+    private long numeroActivo;
+    // Ids demasiado largos para el registro; se avisa una sola vez por id
+    private final Set<String> idsDescartados = new HashSet<>();
+    private final ScheduledExecutorService compactador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "diario-compactador");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param maxSegmentos       segmentos cerrados a partir de los cuales se compacta
+     * @param muestrasPorCliente muestras que conserva la compactación por cliente
+     */
+    DiarioDeriva(Path directorio, int tamanoSegmento, int maxSegmentos, int muestrasPorCliente) throws IOException {
+        this.directorio = directorio;
+        this.tamanoSegmento = Math.max(TAMANO_REGISTRO, tamanoSegmento - tamanoSegmento % TAMANO_REGISTRO);
+        this.maxSegmentos = Math.max(1, maxSegmentos);
+        this.muestrasPorCliente = muestrasPorCliente;
+        Files.createDirectories(directorio);
+    }
+
+    /**
+     * Reproduce todos los segmentos en orden y sigue anexando al final del último si le queda
+     * sitio (así cada arranque no deja un segmento casi vacío); si no, abre uno nuevo.
+     */
+    synchronized void abrir(Lector lector) throws IOException {
+        List<Path> segmentos = segmentos();
+        int fin = 0;
+        for (Path p : segmentos) {
+            fin = reproducir(p, lector);
+        }
+        if (segmentos.isEmpty()) {
+            abrirSegmento(1);
+        } else {
+            long ultimo = numero(segmentos.get(segmentos.size() - 1));
+            abrirSegmento(ultimo, fin);
+            if (activo.remaining() < TAMANO_REGISTRO) {
+                abrirSegmento(ultimo + 1);
+            }
+        }
+
+        compactador.scheduleWithFixedDelay(this::compactarSiHaceFalta, 1, 1, TimeUnit.MINUTES);
+    }
+
+    synchronized void muestra(String clientId, long horaServidor, double desfaseBruto, double rtt) {
+        anexar(MUESTRA, clientId, horaServidor, desfaseBruto, rtt);
+    }
+
+    synchronized void ajuste(String clientId, long horaServidor, double ajuste) {
+        anexar(AJUSTE, clientId, horaServidor, ajuste, 0);
+    }
+
+    synchronized void relojServidor(long horaServidor, double correccion) {
+        anexar(RELOJ_SERVIDOR, "", horaServidor, correccion, 0);
+    }
+
+    private void anexar(byte tipo, String clientId, long hora, double valor, double secundario) {
+        if (activo == null) {
+            return;
+        }
+        byte[] id = clientId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID) {
+            if (idsDescartados.add(clientId)) {
+                Log.texto(Log.Nivel.WARN, "📒 Id de más de " + MAX_ID + " bytes, no se guardará en el diario "
+                          + "(no tendrá arranque en caliente): ", clientId);
+            }
+            return;
+        }
+        try {
+            if (activo.remaining() < TAMANO_REGISTRO) {
+                abrirSegmento(numeroActivo + 1);
+            }
+            escribir(activo, tipo, id, hora, valor, secundario);
+        } catch (IOException e) {
+            System.err.println("❌ Error escribiendo el diario: " + e.getMessage());
+        }
+    }
+
+    // El tipo se escribe al final: un registro a medio escribir se lee como fin de datos
+    private static void escribir(ByteBuffer b, byte tipo, byte[] id, long hora, double valor, double secundario) {
+        int base = b.position();
+        b.put(base + 1, (byte) id.length);
+        b.putLong(base + 8, hora);
+        b.putDouble(base + 16, valor);
+        b.putDouble(base + 24, secundario);
+        for (int i = 0; i < id.length; i++) {
+            b.put(base + 32 + i, id[i]);
+        }
+        b.put(base, tipo);
+        b.position(base + TAMANO_REGISTRO);
+    }
+
+    private void abrirSegmento(long numero) throws IOException {
+        abrirSegmento(numero, 0);
+    }
+
+    // Mapea el segmento (al menos tamanoSegmento bytes; uno compactado puede ser más corto) y
+    // sigue escribiendo desde el byte indicado
+    private void abrirSegmento(long numero, int desde) throws IOException {
+        cerrarActivo();
+        canal = FileChannel.open(ruta(numero), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE);
+        long tamano = Math.max(tamanoSegmento, canal.size() - canal.size() % TAMANO_REGISTRO);
+        activo = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamano);
+        activo.position(desde);
+        numeroActivo = numero;
+    }
+
+    private void cerrarActivo() throws IOException {
+        if (activo != null) {
+            activo.force();
+            activo = null;
+        }
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+
+    // Devuelve el byte donde terminan los datos: el primer registro sin tipo (vacío o a medio escribir)
+    private static int reproducir(Path segmento, Lector lector) throws IOException {
+        try (FileChannel c = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            MappedByteBuffer b = c.map(FileChannel.MapMode.READ_ONLY, 0, c.size());
+            byte[] id = new byte[MAX_ID];
+            int base = 0;
+            for (; base + TAMANO_REGISTRO <= b.limit(); base += TAMANO_REGISTRO) {
+                byte tipo = b.get(base);
+                if (tipo == 0) {
+                    break;
+                }
+                int longitud = Math.min(MAX_ID, b.get(base + 1));
+                long hora = b.getLong(base + 8);
+                double valor = b.getDouble(base + 16);
+                double secundario = b.getDouble(base + 24);
+                for (int i = 0; i < longitud; i++) {
+                    id[i] = b.get(base + 32 + i);
+                }
+                String clientId = new String(id, 0, longitud, StandardCharsets.UTF_8);
+
+                switch (tipo) {
+                    case MUESTRA:
+                        lector.muestra(clientId, hora, valor, secundario);
+                        break;
+                    case AJUSTE:
+                        lector.ajuste(clientId, hora, valor);
+                        break;
+                    case RELOJ_SERVIDOR:
+                        lector.relojServidor(hora, valor);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return base;
+        }
+    }
+
+    /** Registro leído, usado solo durante la compactación. */
+    private static final class Registro {
+        final byte tipo;
+        final byte[] id;
+        final long hora;
+        final double valor;
+        final double secundario;
+
+        Registro(byte tipo, String clientId, long hora, double valor, double secundario) {
+            this.tipo = tipo;
+            this.id = clientId.getBytes(StandardCharsets.UTF_8);
+            this.hora = hora;
+            this.valor = valor;
+            this.secundario = secundario;
+        }
+    }
+
+    // Lo lanza el hilo compactador cada minuto; las pruebas lo llaman directamente
+    void compactarSiHaceFalta() {
+        try {
+            List<Path> cerrados = segmentos();
+            synchronized (this) {
+                cerrados.removeIf(p -> numero(p) >= numeroActivo);
+            }
+            if (cerrados.size() > maxSegmentos) {
+                compactar(cerrados);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.texto(Log.Nivel.ERROR, "❌ Error compactando el diario: ", e.getMessage());
+        }
+    }
+
+    // Reescribe los segmentos cerrados en uno solo con las últimas muestras de cada cliente
+    // y la última corrección del servidor; los ajustes ya aplicados no se conservan.
+    private void compactar(List<Path> cerrados) throws IOException {
+        Map<String, Deque<Registro>> muestras = new HashMap<>();
+        Registro[] reloj = new Registro[1];
+        for (Path p : cerrados) {
+            reproducir(p, new Lector() {
+                @Override
+                public void muestra(String clientId, long hora, double desfaseBruto, double rtt) {
+                    Deque<Registro> d = muestras.computeIfAbsent(clientId, k -> new ArrayDeque<>());
+                    d.addLast(new Registro(MUESTRA, clientId, hora, desfaseBruto, rtt));
+                    if (d.size() > muestrasPorCliente) {
+                        d.removeFirst();
+                    }
+                }
+
+                @Override
+                public void ajuste(String clientId, long hora, double ajuste) {
+                }
+
+                @Override
+                public void relojServidor(long hora, double correccion) {
+                    reloj[0] = new Registro(RELOJ_SERVIDOR, "", hora, correccion, 0);
+                }
+            });
+        }
+
+        List<Registro> conservados = new ArrayList<>();
+        muestras.values().forEach(conservados::addAll);
+        if (reloj[0] != null) {
+            conservados.add(reloj[0]);
+        }
+
+        ByteBuffer b = ByteBuffer.allocate(Math.max(TAMANO_REGISTRO, conservados.size() * TAMANO_REGISTRO));
+        for (Registro r : conservados) {
+            escribir(b, r.tipo, r.id, r.hora, r.valor, r.secundario);
+        }
+        b.flip();
+
+        // El resultado ocupa el lugar del último segmento cerrado, así conserva su orden
+        Path destino = cerrados.get(cerrados.size() - 1);
+        Path temporal = directorio.resolve("compactando.tmp");
+        try (FileChannel c = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (b.hasRemaining()) {
+                c.write(b);
+            }
+            c.force(true);
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (int i = 0; i < cerrados.size() - 1; i++) {
+            Files.deleteIfExists(cerrados.get(i));
+        }
+        Log.texto(Log.Nivel.INFO, "🗜 Diario compactado: ", cerrados.size() + " segmentos -> 1 (" +
+                  conservados.size() + " registros)");
+    }
+
+    private List<Path> segmentos() throws IOException {
+        try (Stream<Path> s = Files.list(directorio)) {
+            List<Path> lista = new ArrayList<>();
+            s.filter(p -> p.getFileName().toString().startsWith(PREFIJO) && p.getFileName().toString().endsWith(SUFIJO))
+             .sorted((a, b) -> Long.compare(numero(a), numero(b)))
+             .forEach(lista::add);
+            return lista;
+        }
+    }
+
+    private Path ruta(long numero) {
+        return directorio.resolve(String.format("%s%010d%s", PREFIJO, numero, SUFIJO));
+    }
+
+    private static long numero(Path p) {
+        String nombre = p.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length()));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        compactador.shutdownNow();
+        cerrarActivo();
+    }
+}
@@ -0,0 +1,46 @@
+package server;
+
+/**
+ * Último estado conocido del reloj de un cliente, tal como lo muestra el monitor.
+ * El desfase y su cota de error salen siempre de la última ronda (que descuenta la latencia);
+ * las instantáneas publicadas solo aportan el slew pendiente, la deriva y la última señal de vida.
+ * Los ajustes confirmados desde la medición se acumulan aparte para poder mostrar el desfase actual.
+ * Se sustituye entero en cada actualización, así que los lectores ven valores coherentes sin bloquear.
+ */
+final class EstadoCliente {
+    // Desfase medido respecto al reloj del servidor y su cota de error (NaN si aún no hubo ronda)
+    final double desfase;
+    final double error;
+    // Corrección del servidor al medir y ajustes que el cliente confirmó después (ms)
+    final double correccionServidor;
+    final double ajusteConfirmado;
+    // Instantes (System.nanoTime) en que se midió el desfase y en que se supo por última vez del cliente
+    final long medidoNanos;
+    final long vistoNanos;
+    final long correccion;
+    final double pendiente;
+    final double derivaPpm;
+
+    EstadoCliente(double desfase, double error, double correccionServidor, double ajusteConfirmado,
+                  long medidoNanos, long vistoNanos, long correccion, double pendiente, double derivaPpm) {
+        this.desfase = desfase;
+        this.error = error;
+        this.correccionServidor = correccionServidor;
+        this.ajusteConfirmado = ajusteConfirmado;
+        this.medidoNanos = medidoNanos;
+        this.vistoNanos = vistoNanos;
+        this.correccion = correccion;
+        this.pendiente = pendiente;
+        this.derivaPpm = derivaPpm;
+    }
+
+    /** Desfase actual: el medido más lo que se ha corregido desde entonces en cada lado. */
+    double desfaseActual(double correccionServidorActual) {
+        return desfase + ajusteConfirmado - (correccionServidorActual - correccionServidor);
+    }
+
+    EstadoCliente conAjuste(double ajuste) {
+        return new EstadoCliente(desfase, error, correccionServidor, ajusteConfirmado + ajuste,
+                                 medidoNanos, vistoNanos, correccion, pendiente, derivaPpm);
+    }
+}
@@ -0,0 +1,133 @@
+package server;
+
+import java.rmi.RemoteException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import remote.ClockSample;
+import remote.ClockService;
+import remote.DatagramaPerdidoException;
+import util.Log;
+
+/**
+ * Estima el desfase de un cliente tomando una ráfaga de muestras y quedándose con la de
+ * menor RTT (filtro de reloj de NTP). Los intervalos se miden con System.nanoTime(), de modo
+ * que no dependen de la granularidad ni de los saltos de System.currentTimeMillis().
+ */
+class EstimadorDesfase {
+    // Resolución de las marcas del cliente (ms enteros): ±0.5 ms en t2 y en t3
+    private static final double RESOLUCION_MS = 1.0;
+
+    // Hora de referencia del servidor en ns (con fracción de ms, a diferencia de objetivoMillis)
+    private final LongSupplier relojServidorNanos;
+    private volatile int muestrasPorCliente;
+
+    // Clientes antiguos que no implementan sample(); se consultan con isAlive()+getTimeMillis()
+    private final Set<String> clientesLegados = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Correspondencia entre la hora del servidor y System.nanoTime(), tomada una vez por ronda:
+     * todas las ráfagas de la ronda derivan t1/t4 del mismo instante, sin redondear a ms.
+     */
+    static final class Ancla {
+        final double ms;
+        final long nanos;
+
+        private Ancla(double ms, long nanos) {
+            this.ms = ms;
+            this.nanos = nanos;
+        }
+    }
+
+    EstimadorDesfase(LongSupplier relojServidorNanos, int muestrasPorCliente) {
+        this.relojServidorNanos = relojServidorNanos;
+        this.muestrasPorCliente = Math.max(1, muestrasPorCliente);
+    }
+
+    int getMuestrasPorCliente() {
+        return muestrasPorCliente;
+    }
+
+    void setMuestrasPorCliente(int muestrasPorCliente) {
+        this.muestrasPorCliente = Math.max(1, muestrasPorCliente);
+    }
+
+    // Se llama al (re)registrar un cliente: puede haber cambiado de versión
+    void olvidar(String clientId) {
+        clientesLegados.remove(clientId);
+    }
+
+    Ancla anclar() {
+        long servidor = relojServidorNanos.getAsLong();
+        return new Ancla(servidor / 1e6, System.nanoTime());
+    }
+
+    /**
+     * Toma la ráfaga completa y devuelve la muestra de menor RTT,
+     * o null si el cliente indica que no está activo.
+     */
+    Muestra estimar(String clientId, ClockService cliente, Ancla ancla) throws RemoteException {
+        Muestra mejor = null;
+        for (int i = 0; i < muestrasPorCliente; i++) {
+            Muestra m = medirUna(clientId, cliente, ancla);
+            if (m == null) {
+                return null;
+            }
+            if (mejor == null || m.rtt < mejor.rtt) {
+                mejor = m;
+            }
+        }
+        return mejor;
+    }
+
+    private Muestra medirUna(String clientId, ClockService cliente, Ancla ancla) throws RemoteException {
+        try {
+            return medirUnaPor(clientId, cliente, ancla);
+        } catch (DatagramaPerdidoException e) {
+            // Muestra fallida: se repite por RMI con t1/t4 nuevos, sin contar la espera como RTT
+            Log.texto(Log.Nivel.DEBUG, "Datagrama perdido, muestra repetida por RMI: ", clientId);
+            return medirUnaPor(clientId, e.getAlternativa(), ancla);
+        }
+    }
+
+    private Muestra medirUnaPor(String clientId, ClockService cliente, Ancla ancla) throws RemoteException {
+        if (!clientesLegados.contains(clientId)) {
+            try {
+                long n1 = System.nanoTime();
+                ClockSample s = cliente.sample();
+                long n4 = System.nanoTime();
+                if (!s.isAlive()) {
+                    return null;
+                }
+
+                double t1 = ancla.ms + (n1 - ancla.nanos) / 1e6;
+                double t4 = ancla.ms + (n4 - ancla.nanos) / 1e6;
+                long t2 = s.getReceiveMillis();
+                long t3 = s.getTransmitMillis();
+                double rtt = Math.max(0, (t4 - t1) - (t3 - t2));
+                double desfase = ((t2 - t1) + (t3 - t4)) / 2;
+                return new Muestra(clientId, t3, rtt, desfase, rtt / 2 + RESOLUCION_MS,
+                                   s.getOffsetMillis());
+            } catch (RemoteException e) {
+                if (!Compatibilidad.metodoNoSoportado(e)) {
+                    throw e;
+                }
+                clientesLegados.add(clientId);
+                Log.texto(Log.Nivel.INFO, clientId, " no soporta sample(), se usará isAlive()+getTimeMillis()");
+            }
+        }
+
+        if (!cliente.isAlive()) {
+            return null;
+        }
+
+        long n1 = System.nanoTime();
+        long horaCliente = cliente.getTimeMillis();
+        long n4 = System.nanoTime();
+
+        double rtt = (n4 - n1) / 1e6;
+        double medio = ancla.ms + ((n1 - ancla.nanos) + (n4 - ancla.nanos)) / 2e6;
+        return new Muestra(clientId, horaCliente, rtt, horaCliente - medio, rtt / 2 + RESOLUCION_MS,
+                           Muestra.SIN_OFFSET);
+    }
+}
@@ -0,0 +1,160 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Estrategia para combinar los desfases de una ronda en un único desfase de consenso.
+ * Los desfases llegan en microsegundos para no perder la fracción de milisegundo medida.
+ * Trabaja sobre arreglos primitivos que el servidor reutiliza entre rondas, por lo que las
+ * implementaciones no son seguras para hilos: cada servidor usa su propia instancia.
+ */
+public interface EstrategiaAgregacion {
+
+    /** Desfase de consenso de los n primeros valores de desfases (no se modifica el arreglo); NaN si n es 0. */
+    double agregar(long[] desfases, int n);
+
+    String nombre();
+
+    /** Promedio simple: el algoritmo de Berkeley original. */
+    static EstrategiaAgregacion media() {
+        return new Media();
+    }
+
+    /** Promedio descartando la fracción indicada de valores en cada extremo. */
+    static EstrategiaAgregacion mediaRecortada(double fraccion) {
+        return new MediaRecortada(fraccion);
+    }
+
+    static EstrategiaAgregacion mediana() {
+        return new Mediana();
+    }
+
+    /** Promedio tolerante a fallos: ignora los desfases a más de umbralMs de la mediana. */
+    static EstrategiaAgregacion tolerante(long umbralMs) {
+        return new Tolerante(umbralMs);
+    }
+
+    /** Construye la estrategia a partir de su nombre (media, recortada, mediana, tolerante). */
+    static EstrategiaAgregacion porNombre(String nombre) {
+        switch (nombre.trim().toLowerCase()) {
+            case "media":
+                return media();
+            case "recortada":
+                return mediaRecortada(Double.parseDouble(System.getProperty("clock.agregacion.recorte", "0.25")));
+            case "mediana":
+                return mediana();
+            case "tolerante":
+                return tolerante(Long.getLong("clock.agregacion.umbralMs", 1000L));
+            default:
+                throw new IllegalArgumentException("Estrategia desconocida: " + nombre);
+        }
+    }
+
+    final class Media implements EstrategiaAgregacion {
+        @Override
+        public double agregar(long[] desfases, int n) {
+            double suma = 0;
+            for (int i = 0; i < n; i++) {
+                suma += desfases[i];
+            }
+            return suma / n;
+        }
+
+        @Override
+        public String nombre() {
+            return "media";
+        }
+    }
+
+    /** Base de las estrategias que necesitan los valores ordenados; reutiliza su copia. */
+    abstract class Ordenada implements EstrategiaAgregacion {
+        private long[] ordenados = new long[0];
+
+        protected long[] ordenar(long[] desfases, int n) {
+            if (ordenados.length < n) {
+                ordenados = new long[Math.max(n, ordenados.length * 2)];
+            }
+            System.arraycopy(desfases, 0, ordenados, 0, n);
+            Arrays.sort(ordenados, 0, n);
+            return ordenados;
+        }
+
+        protected static double mediana(long[] ordenados, int n) {
+            if (n == 0) {
+                return Double.NaN;
+            }
+            int mitad = n / 2;
+            return (n % 2 == 1) ? ordenados[mitad] : (ordenados[mitad - 1] + ordenados[mitad]) / 2.0;
+        }
+    }
+
+    final class MediaRecortada extends Ordenada {
+        private final double fraccion;
+
+        MediaRecortada(double fraccion) {
+            if (fraccion < 0 || fraccion >= 0.5) {
+                throw new IllegalArgumentException("La fracción de recorte debe estar en [0, 0.5)");
+            }
+            this.fraccion = fraccion;
+        }
+
+        @Override
+        public double agregar(long[] desfases, int n) {
+            long[] v = ordenar(desfases, n);
+            int k = (int) (n * fraccion);
+            double suma = 0;
+            for (int i = k; i < n - k; i++) {
+                suma += v[i];
+            }
+            return suma / (n - 2 * k);
+        }
+
+        @Override
+        public String nombre() {
+            return "recortada(" + fraccion + ")";
+        }
+    }
+
+    final class Mediana extends Ordenada {
+        @Override
+        public double agregar(long[] desfases, int n) {
+            return mediana(ordenar(desfases, n), n);
+        }
+
+        @Override
+        public String nombre() {
+            return "mediana";
+        }
+    }
+
+    final class Tolerante extends Ordenada {
+        private final long umbralMs;
+        private final long umbralMicros;
+
+        Tolerante(long umbralMs) {
+            this.umbralMs = umbralMs;
+            this.umbralMicros = umbralMs * 1000;
+        }
+
+        @Override
+        public double agregar(long[] desfases, int n) {
+            long[] v = ordenar(desfases, n);
+            double centro = mediana(v, n);
+            double suma = 0;
+            int validos = 0;
+            for (int i = 0; i < n; i++) {
+                if (Math.abs(v[i] - centro) <= umbralMicros) {
+                    suma += v[i];
+                    validos++;
+                }
+            }
+            // Si nadie queda dentro del umbral, la mediana es el mejor consenso disponible
+            return validos == 0 ? centro : suma / validos;
+        }
+
+        @Override
+        public String nombre() {
+            return "tolerante(" + umbralMs + "ms)";
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma log-lineal de bajo coste para valores no negativos (por ejemplo microsegundos).
+ * Cada potencia de dos se divide en 16 sub-intervalos (error relativo menor que 6.25%) y
+ * registrar un valor es solo un incremento atómico, sin reservar memoria.
+ */
+final class Histograma {
+    private static final int BITS_SUB = 4;
+    private static final int SUB = 1 << BITS_SUB;
+    private static final int CUBETAS = (64 - BITS_SUB) * SUB;
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(CUBETAS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong suma = new AtomicLong();
+    private final AtomicLong maximo = new AtomicLong();
+
+    void registrar(long valor) {
+        long v = Math.max(0, valor);
+        cuentas.incrementAndGet(indice(v));
+        total.incrementAndGet();
+        suma.addAndGet(v);
+        maximo.accumulateAndGet(v, Math::max);
+    }
+
+    private static int indice(long v) {
+        if (v < SUB) {
+            return (int) v;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) ((v >>> (exponente - BITS_SUB)) & (SUB - 1));
+        return (exponente - BITS_SUB + 1) * SUB + sub;
+    }
+
+    // Límite inferior de la cubeta
+    private static long valorDe(int indice) {
+        if (indice < SUB) {
+            return indice;
+        }
+        int exponente = indice / SUB + BITS_SUB - 1;
+        int sub = indice % SUB;
+        return (long) (SUB + sub) << (exponente - BITS_SUB);
+    }
+
+    long getTotal() {
+        return total.get();
+    }
+
+    long getMaximo() {
+        return maximo.get();
+    }
+
+    double getMedia() {
+        long n = total.get();
+        return n == 0 ? 0 : (double) suma.get() / n;
+    }
+
+    /** Valor del percentil p (0-100), aproximado al punto medio de su cubeta. */
+    long percentil(double p) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(n * p / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += cuentas.get(i);
+            if (acumulado >= objetivo) {
+                long medio = valorDe(i) + (valorDe(i + 1) - valorDe(i)) / 2;
+                return Math.min(medio, maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    void reiniciar() {
+        for (int i = 0; i < CUBETAS; i++) {
+            cuentas.set(i, 0);
+        }
+        total.set(0);
+        suma.set(0);
+        maximo.set(0);
+    }
+}
@@ -0,0 +1,118 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Historial de desfases "en bruto" (sin las correcciones ya aplicadas) de cada cliente.
+ * Con una regresión lineal sobre el historial se estima la deriva de frecuencia del
+ * reloj del cliente respecto al del servidor, en partes por millón.
+ */
+class HistorialDeriva {
+    private final int capacidad;
+    private final int minPuntos;
+    private final long minIntervaloMs;
+    private final Map<String, Serie> series = new ConcurrentHashMap<>();
+
+    HistorialDeriva(int capacidad, int minPuntos, long minIntervaloMs) {
+        this.capacidad = Math.max(2, capacidad);
+        this.minPuntos = Math.max(2, minPuntos);
+        this.minIntervaloMs = minIntervaloMs;
+    }
+
+    int getCapacidad() {
+        return capacidad;
+    }
+
+    /** Añade una observación: hora local (sin offset) del servidor y desfase bruto del cliente. */
+    void registrar(String clientId, long horaServidorMs, double desfaseBrutoMs) {
+        series.computeIfAbsent(clientId, k -> new Serie(capacidad)).agregar(horaServidorMs, desfaseBrutoMs);
+    }
+
+    /**
+     * Deriva estimada en ppm (positiva = el cliente adelanta), 0 si no es significativa frente al
+     * ruido, o NaN si aún no hay datos suficientes.
+     */
+    double derivaPpm(String clientId) {
+        Serie s = series.get(clientId);
+        return s == null ? Double.NaN : s.pendientePpm(minPuntos, minIntervaloMs);
+    }
+
+    void olvidar(String clientId) {
+        series.remove(clientId);
+    }
+
+    /** Ventana circular de puntos (x, y) de un cliente. */
+    private static final class Serie {
+        private final long[] x;
+        private final double[] y;
+        private int inicio;
+        private int cantidad;
+
+        Serie(int capacidad) {
+            x = new long[capacidad];
+            y = new double[capacidad];
+        }
+
+        synchronized void agregar(long xi, double yi) {
+            int pos = (inicio + cantidad) % x.length;
+            x[pos] = xi;
+            y[pos] = yi;
+            if (cantidad < x.length) {
+                cantidad++;
+            } else {
+                inicio = (inicio + 1) % x.length;
+            }
+        }
+
+        // Mínimos cuadrados sobre los valores centrados para no perder precisión con épocas en ms
+        synchronized double pendientePpm(int minPuntos, long minIntervaloMs) {
+            if (cantidad < minPuntos) {
+                return Double.NaN;
+            }
+            long x0 = x[inicio];
+            long xUltimo = x[(inicio + cantidad - 1) % x.length];
+            if (xUltimo - x0 < minIntervaloMs) {
+                return Double.NaN;
+            }
+
+            double mediaX = 0;
+            double mediaY = 0;
+            for (int i = 0; i < cantidad; i++) {
+                int p = (inicio + i) % x.length;
+                mediaX += x[p] - x0;
+                mediaY += y[p];
+            }
+            mediaX /= cantidad;
+            mediaY /= cantidad;
+
+            double sxy = 0;
+            double sxx = 0;
+            for (int i = 0; i < cantidad; i++) {
+                int p = (inicio + i) % x.length;
+                double dx = (x[p] - x0) - mediaX;
+                sxy += dx * (y[p] - mediaY);
+                sxx += dx * dx;
+            }
+            if (sxx == 0) {
+                return Double.NaN;
+            }
+            double pendiente = sxy / sxx;
+
+            // Solo se informa la deriva si es significativa frente al ruido de las muestras (|b| > 2·σb)
+            if (cantidad > 2) {
+                double residuos = 0;
+                for (int i = 0; i < cantidad; i++) {
+                    int p = (inicio + i) % x.length;
+                    double e = (y[p] - mediaY) - pendiente * ((x[p] - x0) - mediaX);
+                    residuos += e * e;
+                }
+                double errorPendiente = Math.sqrt(residuos / (cantidad - 2) / sxx);
+                if (Math.abs(pendiente) <= 2 * errorPendiente) {
+                    return 0;
+                }
+            }
+            return pendiente * 1e6;
+        }
+    }
+}
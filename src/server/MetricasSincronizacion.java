@@ -0,0 +1,223 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Métricas de las rondas de sincronización: histogramas de RTT y desfase (globales y por
+ * cliente), duración de las rondas, clientes omitidos y fallos al enviar ajustes.
+ * Se publican por JMX (MetricasSincronizacionMBean) y con el comando 'stats' de la consola.
+ */
+public class MetricasSincronizacion implements MetricasSincronizacionMBean {
+
+    // Clientes con mayor |desfase| que se listan en el resumen
+    private static final int PEORES = 5;
+
+    /**
+     * Resumen compacto de un cliente (unos pocos long, frente a los ~8 KB de un Histograma), para
+     * que el coste por cliente siga siendo pequeño con miles de clientes. Los percentiles son globales.
+     */
+    private static final class MetricasCliente {
+        long muestras;
+        long rttUltimo;
+        long rttMin = Long.MAX_VALUE;
+        long rttMax;
+        long desfaseUltimo;
+        long desfaseMax;
+
+        synchronized void registrar(long rttMicros, long desfaseMicros) {
+            muestras++;
+            rttUltimo = rttMicros;
+            rttMin = Math.min(rttMin, rttMicros);
+            rttMax = Math.max(rttMax, rttMicros);
+            desfaseUltimo = desfaseMicros;
+            desfaseMax = Math.max(desfaseMax, desfaseMicros);
+        }
+
+        synchronized long getDesfaseUltimo() {
+            return desfaseUltimo;
+        }
+
+        synchronized String resumen() {
+            return String.format("n=%d | RTT (ms): último=%.3f min=%.3f max=%.3f | |Desfase| (ms): último=%.3f max=%.3f",
+                    muestras, rttUltimo / 1000.0, rttMin / 1000.0, rttMax / 1000.0,
+                    desfaseUltimo / 1000.0, desfaseMax / 1000.0);
+        }
+    }
+
+    private final IntSupplier clientesRegistrados;
+
+    private final Histograma rtt = new Histograma();
+    private final Histograma desfase = new Histograma();
+    private final Histograma duracionRonda = new Histograma();
+    private final Map<String, MetricasCliente> porCliente = new ConcurrentHashMap<>();
+
+    private final AtomicLong rondas = new AtomicLong();
+    private final AtomicLong omitidosTotales = new AtomicLong();
+    private final AtomicLong fallosAjuste = new AtomicLong();
+    private volatile int omitidosUltimaRonda;
+
+    MetricasSincronizacion(IntSupplier clientesRegistrados) {
+        this.clientesRegistrados = clientesRegistrados;
+    }
+
+    void registrarMuestra(String clientId, double rttMs, double desfaseMs) {
+        long rttMicros = Math.round(rttMs * 1000);
+        long desfaseMicros = Math.round(Math.abs(desfaseMs) * 1000);
+        rtt.registrar(rttMicros);
+        desfase.registrar(desfaseMicros);
+
+        porCliente.computeIfAbsent(clientId, k -> new MetricasCliente()).registrar(rttMicros, desfaseMicros);
+    }
+
+    void registrarRonda(long duracionNanos, int omitidos) {
+        rondas.incrementAndGet();
+        duracionRonda.registrar(duracionNanos / 1000);
+        omitidosUltimaRonda = omitidos;
+        omitidosTotales.addAndGet(omitidos);
+    }
+
+    void registrarFalloAjuste() {
+        fallosAjuste.incrementAndGet();
+    }
+
+    void olvidar(String clientId) {
+        porCliente.remove(clientId);
+    }
+
+    @Override
+    public long getRondas() {
+        return rondas.get();
+    }
+
+    @Override
+    public int getClientesRegistrados() {
+        return clientesRegistrados.getAsInt();
+    }
+
+    @Override
+    public int getClientesOmitidosUltimaRonda() {
+        return omitidosUltimaRonda;
+    }
+
+    @Override
+    public long getClientesOmitidosTotales() {
+        return omitidosTotales.get();
+    }
+
+    @Override
+    public long getFallosEnvioAjuste() {
+        return fallosAjuste.get();
+    }
+
+    @Override
+    public long getDuracionRondaP50Micros() {
+        return duracionRonda.percentil(50);
+    }
+
+    @Override
+    public long getDuracionRondaP99Micros() {
+        return duracionRonda.percentil(99);
+    }
+
+    @Override
+    public long getDuracionRondaMaxMicros() {
+        return duracionRonda.getMaximo();
+    }
+
+    @Override
+    public long getRttP50Micros() {
+        return rtt.percentil(50);
+    }
+
+    @Override
+    public long getRttP99Micros() {
+        return rtt.percentil(99);
+    }
+
+    @Override
+    public long getRttMaxMicros() {
+        return rtt.getMaximo();
+    }
+
+    @Override
+    public long getDesfaseAbsP50Micros() {
+        return desfase.percentil(50);
+    }
+
+    @Override
+    public long getDesfaseAbsP99Micros() {
+        return desfase.percentil(99);
+    }
+
+    @Override
+    public long getDesfaseAbsMaxMicros() {
+        return desfase.getMaximo();
+    }
+
+    @Override
+    public String resumenCliente(String clientId) {
+        MetricasCliente c = porCliente.get(clientId);
+        if (c == null) {
+            return clientId + ": sin muestras";
+        }
+        return clientId + ": " + c.resumen();
+    }
+
+    @Override
+    public String resumen() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Rondas: ").append(getRondas())
+          .append(" | Clientes registrados: ").append(getClientesRegistrados())
+          .append(" | Omitidos (última/total): ").append(getClientesOmitidosUltimaRonda())
+          .append('/').append(getClientesOmitidosTotales())
+          .append(" | Fallos de ajuste: ").append(getFallosEnvioAjuste()).append('\n');
+        sb.append(linea("Duración ronda", duracionRonda)).append('\n');
+        sb.append(linea("RTT", rtt)).append('\n');
+        sb.append(linea("|Desfase|", desfase)).append('\n');
+        // Solo los peores clientes: con miles de clientes una línea por cliente no se puede leer
+        String[] peores = new String[PEORES];
+        long[] desfases = new long[PEORES];
+        int n = 0;
+        for (Map.Entry<String, MetricasCliente> e : porCliente.entrySet()) {
+            long d = e.getValue().getDesfaseUltimo();
+            if (n < PEORES || d > desfases[n - 1]) {
+                int i = n < PEORES ? n++ : PEORES - 1;
+                while (i > 0 && desfases[i - 1] < d) {
+                    peores[i] = peores[i - 1];
+                    desfases[i] = desfases[i - 1];
+                    i--;
+                }
+                peores[i] = e.getKey();
+                desfases[i] = d;
+            }
+        }
+        if (n > 0) {
+            sb.append("Mayor |desfase| en la última muestra (detalle con 'stats <id>'):\n");
+            for (int i = 0; i < n; i++) {
+                sb.append("  ").append(resumenCliente(peores[i])).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String linea(String nombre, Histograma h) {
+        return String.format("%s (ms): n=%d media=%.3f p50=%.3f p90=%.3f p99=%.3f max=%.3f",
+                nombre, h.getTotal(), h.getMedia() / 1000, h.percentil(50) / 1000.0, h.percentil(90) / 1000.0,
+                h.percentil(99) / 1000.0, h.getMaximo() / 1000.0);
+    }
+
+    @Override
+    public void reiniciar() {
+        rtt.reiniciar();
+        desfase.reiniciar();
+        duracionRonda.reiniciar();
+        porCliente.clear();
+        rondas.set(0);
+        omitidosTotales.set(0);
+        fallosAjuste.set(0);
+        omitidosUltimaRonda = 0;
+    }
+}
@@ -0,0 +1,42 @@
+package server;
+
+/**
+ * Interfaz JMX de las métricas del coordinador. Los tiempos se expresan en microsegundos.
+ */
+public interface MetricasSincronizacionMBean {
+    long getRondas();
+
+    int getClientesRegistrados();
+
+    int getClientesOmitidosUltimaRonda();
+
+    long getClientesOmitidosTotales();
+
+    long getFallosEnvioAjuste();
+
+    long getDuracionRondaP50Micros();
+
+    long getDuracionRondaP99Micros();
+
+    long getDuracionRondaMaxMicros();
+
+    long getRttP50Micros();
+
+    long getRttP99Micros();
+
+    long getRttMaxMicros();
+
+    long getDesfaseAbsP50Micros();
+
+    long getDesfaseAbsP99Micros();
+
+    long getDesfaseAbsMaxMicros();
+
+    /** Resumen de RTT y desfase de un cliente concreto. */
+    String resumenCliente(String clientId);
+
+    /** Resumen de todas las métricas en texto, el mismo que muestra el comando 'stats'. */
+    String resumen();
+
+    void reiniciar();
+}
@@ -0,0 +1,30 @@
+package server;
+
+import remote.ClockSample;
+
+/**
+ * Resultado de medir el reloj de un cliente durante una ronda de sincronización.
+ * El desfase se expresa en ms (con fracción) respecto al reloj del servidor en el mismo
+ * instante, con una cota de error derivada del RTT de la muestra elegida.
+ */
+final class Muestra {
+    // Valor de offsetCliente cuando el cliente no informa su offset (clientes antiguos)
+    static final long SIN_OFFSET = ClockSample.OFFSET_DESCONOCIDO;
+
+    final String clientId;
+    final long horaCliente;
+    final double rtt;
+    final double desfase;
+    final double error;
+    // Corrección total que el cliente aplicaba al tomar la muestra
+    final long offsetCliente;
+
+    Muestra(String clientId, long horaCliente, double rtt, double desfase, double error, long offsetCliente) {
+        this.clientId = clientId;
+        this.horaCliente = horaCliente;
+        this.rtt = rtt;
+        this.desfase = desfase;
+        this.error = error;
+        this.offsetCliente = offsetCliente;
+    }
+}
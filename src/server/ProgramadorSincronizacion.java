@@ -0,0 +1,101 @@
+package server;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Lanza rondas de sincronización periódicas con intervalo adaptativo: si la mayor corrección
+ * de la ronda es pequeña el intervalo se alarga, y si es grande se acorta.
+ */
+class ProgramadorSincronizacion {
+    private final DoubleSupplier ronda;
+    private final long intervaloMinMs;
+    private final long intervaloMaxMs;
+    private final double umbralEstableMs;
+    private final double umbralDerivaMs;
+
+    private final ScheduledExecutorService planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sync-programador");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile long intervaloMs;
+    private ScheduledFuture<?> siguiente;
+    // Cambia en cada iniciar/detener: una ronda de una cadena anterior no se vuelve a programar
+    private long generacion;
+
+    /**
+     * @param ronda ejecuta una ronda y devuelve la mayor corrección aplicada (ms),
+     *              o NaN si no hubo ronda (sin clientes o ya había una en curso)
+     */
+    ProgramadorSincronizacion(DoubleSupplier ronda, long intervaloMs, long intervaloMinMs, long intervaloMaxMs,
+                              double umbralEstableMs, double umbralDerivaMs) {
+        this.ronda = ronda;
+        this.intervaloMinMs = intervaloMinMs;
+        this.intervaloMaxMs = intervaloMaxMs;
+        this.umbralEstableMs = umbralEstableMs;
+        this.umbralDerivaMs = umbralDerivaMs;
+        this.intervaloMs = limitar(intervaloMs);
+    }
+
+    synchronized void iniciar() {
+        if (siguiente == null) {
+            long gen = ++generacion;
+            siguiente = planificador.schedule(() -> ejecutar(gen), intervaloMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void detener() {
+        generacion++;
+        if (siguiente != null) {
+            siguiente.cancel(false);
+            siguiente = null;
+        }
+    }
+
+    /** Detiene las rondas y libera el hilo del planificador; no se puede volver a iniciar. */
+    synchronized void cerrar() {
+        detener();
+        planificador.shutdownNow();
+    }
+
+    synchronized boolean isActivo() {
+        return siguiente != null;
+    }
+
+    long getIntervaloMs() {
+        return intervaloMs;
+    }
+
+    private void ejecutar(long gen) {
+        double maxCorreccion = Double.NaN;
+        try {
+            maxCorreccion = ronda.getAsDouble();
+        } catch (RuntimeException e) {
+            System.err.println("Error en sincronización programada: " + e.getMessage());
+        }
+
+        if (!Double.isNaN(maxCorreccion)) {
+            if (maxCorreccion < umbralEstableMs) {
+                intervaloMs = limitar(intervaloMs * 2);
+            } else if (maxCorreccion > umbralDerivaMs) {
+                intervaloMs = limitar(intervaloMs / 2);
+            }
+        }
+
+        synchronized (this) {
+            // Si se detuvo (o se detuvo y se reinició) mientras corría la ronda, esta cadena termina aquí
+            if (gen == generacion && siguiente != null) {
+                siguiente = planificador.schedule(() -> ejecutar(gen), intervaloMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private long limitar(long ms) {
+        return Math.max(intervaloMinMs, Math.min(intervaloMaxMs, ms));
+    }
+}
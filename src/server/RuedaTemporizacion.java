@@ -0,0 +1,134 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Rueda de temporización con hash para los leases de los clientes. Programar, renovar y
+ * cancelar un lease es O(1); en cada tick solo se revisa una ranura, y los leases vencidos
+ * se notifican fuera del lock.
+ */
+class RuedaTemporizacion {
+
+    private static final class Entrada {
+        final String id;
+        long vencimiento;
+        int ranura;
+
+        Entrada(String id) {
+            this.id = id;
+        }
+    }
+
+    private final long tickMs;
+    private final List<Set<Entrada>> ranuras;
+    private final Map<String, Entrada> entradas = new HashMap<>();
+    private final Consumer<String> alExpirar;
+    private long tickActual;
+
+    private final ScheduledExecutorService reloj = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "leases-rueda");
+        t.setDaemon(true);
+        return t;
+    });
+
+    RuedaTemporizacion(long tickMs, int numeroRanuras, Consumer<String> alExpirar) {
+        this.tickMs = Math.max(1, tickMs);
+        this.alExpirar = alExpirar;
+        this.ranuras = new ArrayList<>(numeroRanuras);
+        for (int i = 0; i < numeroRanuras; i++) {
+            ranuras.add(new HashSet<>());
+        }
+    }
+
+    void iniciar() {
+        reloj.scheduleAtFixedRate(this::avanzar, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Detiene la rueda; los leases pendientes ya no vencen. */
+    void cerrar() {
+        reloj.shutdownNow();
+    }
+
+    /** Programa (o renueva) el lease de id para que venza dentro de plazoMs. */
+    synchronized void programar(String id, long plazoMs) {
+        long ticks = Math.max(1, (plazoMs + tickMs - 1) / tickMs);
+        Entrada e = entradas.get(id);
+        if (e == null) {
+            e = new Entrada(id);
+            entradas.put(id, e);
+        } else {
+            ranuras.get(e.ranura).remove(e);
+        }
+        e.vencimiento = tickActual + ticks;
+        e.ranura = (int) (e.vencimiento % ranuras.size());
+        ranuras.get(e.ranura).add(e);
+    }
+
+    /** Renueva solo si el lease sigue vigente; devuelve false si ya venció o no existe. */
+    synchronized boolean renovar(String id, long plazoMs) {
+        if (!entradas.containsKey(id)) {
+            return false;
+        }
+        programar(id, plazoMs);
+        return true;
+    }
+
+    synchronized void cancelar(String id) {
+        Entrada e = entradas.remove(id);
+        if (e != null) {
+            ranuras.get(e.ranura).remove(e);
+        }
+    }
+
+    /**
+     * Ejecuta accion bajo el lock de la rueda solo si id no tiene lease vigente. Las expiraciones
+     * se notifican fuera del lock, así que entre el vencimiento y la notificación el cliente
+     * pudo volver a registrarse; esto evita darlo de baja en ese caso.
+     */
+    synchronized boolean siSinLease(String id, Runnable accion) {
+        if (entradas.containsKey(id)) {
+            return false;
+        }
+        accion.run();
+        return true;
+    }
+
+    private void avanzar() {
+        List<String> vencidos = null;
+        synchronized (this) {
+            tickActual++;
+            Iterator<Entrada> it = ranuras.get((int) (tickActual % ranuras.size())).iterator();
+            while (it.hasNext()) {
+                Entrada e = it.next();
+                // Las entradas de vueltas posteriores comparten ranura pero aún no vencen
+                if (e.vencimiento <= tickActual) {
+                    it.remove();
+                    entradas.remove(e.id);
+                    if (vencidos == null) {
+                        vencidos = new ArrayList<>();
+                    }
+                    vencidos.add(e.id);
+                }
+            }
+        }
+        if (vencidos != null) {
+            for (String id : vencidos) {
+                try {
+                    alExpirar.accept(id);
+                } catch (RuntimeException ex) {
+                    System.err.println("Error expirando lease de " + id + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package simulador;
+
+import java.rmi.ConnectException;
+import java.rmi.RemoteException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import remote.ClockSample;
+import remote.ClockService;
+import util.RelojAjustable;
+import util.VentanaEpocas;
+
+/**
+ * Cliente simulado en el mismo proceso que el coordinador. Su reloj bruto deriva a una tasa fija
+ * y cada llamada sufre latencia, jitter y pérdidas (una pérdida cuesta una retransmisión TCP).
+ * Puede caerse: mientras está caído rechaza las llamadas como un nodo sin conexión, y al
+ * reiniciarse pierde las correcciones recibidas.
+ */
+public class NodoSimulado implements ClockService {
+    private static final double TASA_SLEW = 0.05;
+    private static final long UMBRAL_PASO_MS = 1000;
+
+    private final String id;
+    private final long offsetInicialMs;
+    private final LongSupplier fuenteNanos;
+    // Retardo fijo de cada sentido, jitter máximo por sentido y coste de una pérdida (ns)
+    private final long latenciaNanos;
+    private final long jitterNanos;
+    private final long retransmisionNanos;
+    private final double probPerdida;
+
+    private volatile RelojAjustable reloj;
+    private volatile boolean caido;
+    private final VentanaEpocas epocasAplicadas = new VentanaEpocas();
+
+    /**
+     * @param derivaPpm      deriva del oscilador del nodo (positiva: adelanta)
+     * @param latenciaMs     retardo de cada sentido de una llamada
+     * @param jitterMs       retardo adicional aleatorio de cada sentido, entre 0 y este valor
+     * @param probPerdida    probabilidad de que un sentido de una llamada se pierda
+     * @param retransmisionMs retardo que añade una pérdida (retransmisión)
+     */
+    public NodoSimulado(String id, long offsetInicialMs, double derivaPpm, double latenciaMs, double jitterMs,
+                        double probPerdida, double retransmisionMs) {
+        this.id = id;
+        this.offsetInicialMs = offsetInicialMs;
+        this.latenciaNanos = aNanos(latenciaMs);
+        this.jitterNanos = aNanos(jitterMs);
+        this.retransmisionNanos = aNanos(retransmisionMs);
+        this.probPerdida = probPerdida;
+
+        long epoca = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        long ancla = System.nanoTime();
+        double factor = 1 + derivaPpm / 1e6;
+        this.fuenteNanos = () -> epoca + (long) ((System.nanoTime() - ancla) * factor);
+        this.reloj = new RelojAjustable(offsetInicialMs, fuenteNanos, TASA_SLEW, UMBRAL_PASO_MS);
+    }
+
+    private static long aNanos(double millis) {
+        return Math.round(millis * 1_000_000);
+    }
+
+    /** Hora que el nodo muestra ahora (ms, con el slew pendiente sin aplicar), sin latencia simulada. */
+    public long leerMillis() {
+        return reloj.leerMillis();
+    }
+
+    public boolean isCaido() {
+        return caido;
+    }
+
+    public void caer() {
+        caido = true;
+    }
+
+    /** Vuelve a arrancar con el reloj sin corregir, como un proceso nuevo. */
+    public void reiniciar() {
+        reloj = new RelojAjustable(offsetInicialMs, fuenteNanos, TASA_SLEW, UMBRAL_PASO_MS);
+        epocasAplicadas.reiniciar();
+        caido = false;
+    }
+
+    // Un sentido de la llamada: retardo fijo + jitter, y una retransmisión si el paquete se pierde
+    private void viajar() {
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        long retardo = latenciaNanos;
+        if (jitterNanos > 0) {
+            retardo += azar.nextLong(jitterNanos);
+        }
+        if (probPerdida > 0 && azar.nextDouble() < probPerdida) {
+            retardo += retransmisionNanos;
+        }
+        if (retardo > 0) {
+            LockSupport.parkNanos(retardo);
+        }
+    }
+
+    private void llegar() throws RemoteException {
+        if (caido) {
+            throw new ConnectException("Nodo " + id + " caído (simulado)");
+        }
+        viajar();
+    }
+
+    @Override
+    public long getTimeMillis() throws RemoteException {
+        llegar();
+        long t = reloj.leerMillis();
+        viajar();
+        return t;
+    }
+
+    @Override
+    public ClockSample sample() throws RemoteException {
+        llegar();
+        RelojAjustable r = reloj;
+        long recibido = r.objetivoMillis();
+        long offset = r.correccionMillis();
+        long enviado = r.objetivoMillis();
+        viajar();
+        return new ClockSample(recibido, enviado, offset, true);
+    }
+
+    @Override
+    public void applyAdjustment(long offsetMillis) throws RemoteException {
+        llegar();
+        reloj.ajustar(offsetMillis);
+        viajar();
+    }
+
+    @Override
+    public boolean aplicarAjusteEpoca(long epoca, double ajusteMillis) throws RemoteException {
+        llegar();
+        if (!epocasAplicadas.marcar(epoca)) {
+            return false;
+        }
+        reloj.ajustar(ajusteMillis);
+        // Se pierde la respuesta: el coordinador reintentará una época que ya está aplicada
+        if (probPerdida > 0 && ThreadLocalRandom.current().nextDouble() < probPerdida) {
+            throw new RemoteException("Acuse perdido (simulado) en " + id);
+        }
+        viajar();
+        return true;
+    }
+
+    @Override
+    public void applyDriftRate(double ppm) throws RemoteException {
+        llegar();
+        reloj.fijarDerivaPpm(ppm);
+        viajar();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isAlive() throws RemoteException {
+        llegar();
+        viajar();
+        return true;
+    }
+}
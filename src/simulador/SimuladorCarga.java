@@ -0,0 +1,245 @@
+package simulador;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import remote.ClockService;
+import server.ClockServer;
+import server.MetricasSincronizacion;
+
+/**
+ * Simulador de carga: levanta en un solo proceso un ClockServer real y miles de NodoSimulado con
+ * deriva, latencia, jitter, pérdidas y caídas, y mide para cada tamaño de clúster el tiempo de
+ * convergencia, el error residual y el consumo del coordinador.
+ *
+ * Uso: java simulador.SimuladorCarga [tamaño...]   (por defecto 100 1000 5000)
+ * Parámetros con -Dclock.sim.* (ver README).
+ */
+public class SimuladorCarga {
+    private static final DecimalFormat DF = new DecimalFormat("0.00");
+    private static final ThreadMXBean HILOS = ManagementFactory.getThreadMXBean();
+    // Hilos propios del coordinador; el hilo que llama a sincronizar() se mide aparte
+    private static final Set<String> HILOS_COORDINADOR =
+            Set.of("sync-consulta", "sync-programador", "leases-rueda", "diario-compactador", "udp-receptor");
+
+    private final double derivaMaxPpm = Double.parseDouble(System.getProperty("clock.sim.derivaMaxPpm", "50"));
+    private final long offsetMaxMs = Long.getLong("clock.sim.offsetMaxMs", 500L);
+    private final double latenciaMs = Double.parseDouble(System.getProperty("clock.sim.latenciaMs", "0.5"));
+    private final double jitterMs = Double.parseDouble(System.getProperty("clock.sim.jitterMs", "0.2"));
+    private final double perdida = Double.parseDouble(System.getProperty("clock.sim.perdida", "0.01"));
+    private final double retransmisionMs = Double.parseDouble(System.getProperty("clock.sim.retransmisionMs", "200"));
+    // Probabilidad de que un nodo se caiga en cada ronda, y rondas que tarda en volver
+    private final double caidas = Double.parseDouble(System.getProperty("clock.sim.caidas", "0.001"));
+    private final int rondasCaido = Integer.getInteger("clock.sim.rondasCaido", 3);
+    private final int rondas = Integer.getInteger("clock.sim.rondas", 15);
+    private final long pausaMs = Long.getLong("clock.sim.pausaMs", 200L);
+    private final long toleranciaMs = Long.getLong("clock.sim.toleranciaMs", 2L);
+    // Con RMI los nodos se exportan y el servidor los llama por loopback; si no, se llaman en proceso
+    private final boolean rmi = Boolean.getBoolean("clock.sim.rmi");
+    private final long semilla = Long.getLong("clock.sim.semilla", 42L);
+
+    private final PrintStream salida = System.out;
+    private final PrintStream errores = System.err;
+    private final PrintStream nula = new PrintStream(OutputStream.nullOutputStream());
+
+    /** Resultado de un tamaño de clúster. */
+    private static final class Resultado {
+        int nodos;
+        long convergenciaMs = -1;
+        int convergenciaRondas = -1;
+        long residualP50;
+        long residualP99;
+        long residualMax;
+        double rondaP99Ms;
+        double cpuPorRondaMs;
+        double heapMb;
+        int hilosCoordinador;
+        long omitidos;
+        long fallosAjuste;
+        int caidas;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Sin diario ni trazas por ronda: solo interesa el resumen
+        System.setProperty("clock.diario", System.getProperty("clock.diario", "false"));
+        System.setProperty("clock.log.nivel", System.getProperty("clock.log.nivel", "ERROR"));
+
+        int[] tamanos = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {100, 1000, 5000};
+
+        SimuladorCarga simulador = new SimuladorCarga();
+        System.out.println("🧪 Simulador de carga: " + simulador.rondas + " rondas por tamaño, pausa " + simulador.pausaMs +
+                           "ms, transporte " + (simulador.rmi ? "RMI (loopback)" : "en proceso"));
+        System.out.println("Nodos\tConverge(ms)\tConverge(rondas)\tResidual p50/p99/max(ms)\tRonda p99(ms)\tCPU coord./ronda(ms)\tHeap coord.(MB)\tHilos coord.\tOmitidos\tFallos ajuste\tCaídas");
+        for (int n : tamanos) {
+            Resultado r = simulador.ejecutar(n);
+            System.out.println(r.nodos + "\t" + (r.convergenciaMs < 0 ? "no" : Long.toString(r.convergenciaMs)) +
+                               "\t" + (r.convergenciaRondas < 0 ? "no" : Integer.toString(r.convergenciaRondas)) +
+                               "\t" + r.residualP50 + "/" + r.residualP99 + "/" + r.residualMax +
+                               "\t" + DF.format(r.rondaP99Ms) + "\t" + DF.format(r.cpuPorRondaMs) +
+                               "\t" + DF.format(r.heapMb) + "\t" + r.hilosCoordinador + "\t" + r.omitidos +
+                               "\t" + r.fallosAjuste + "\t" + r.caidas);
+        }
+        // Los objetos exportados por RMI mantienen viva la JVM
+        System.exit(0);
+    }
+
+    private Resultado ejecutar(int n) throws Exception {
+        Random azar = new Random(semilla + n);
+        NodoSimulado[] nodos = new NodoSimulado[n];
+        ClockService[] refs = new ClockService[n];
+        int[] caidoHasta = new int[n];
+        long[] residuales = new long[n];
+        for (int i = 0; i < n; i++) {
+            long offset = Math.round((azar.nextDouble() * 2 - 1) * offsetMaxMs);
+            double deriva = (azar.nextDouble() * 2 - 1) * derivaMaxPpm;
+            nodos[i] = new NodoSimulado("sim-" + i, offset, deriva, latenciaMs, jitterMs, perdida, retransmisionMs);
+            refs[i] = rmi ? (ClockService) UnicastRemoteObject.exportObject(nodos[i], 0) : nodos[i];
+        }
+        // Los nodos ya existen: lo que crezca el heap desde aquí es del coordinador
+        long heapNodos = heapTrasGc();
+
+        Resultado r = new Resultado();
+        r.nodos = n;
+        Map<Long, Long> cpuHilos = new HashMap<>();
+        long cpuCoordinador = 0;
+
+        silenciar();
+        ClockServer servidor = new ClockServer(null);
+        try {
+            for (int i = 0; i < n; i++) {
+                servidor.registrarCliente(nodos[i].getId(), refs[i]);
+            }
+        } finally {
+            restaurar();
+        }
+        // Solo cuentan las rondas: se descarta la CPU del alta de los nodos
+        cpuHilosCoordinador(cpuHilos);
+        long inicio = System.nanoTime();
+
+        for (int ronda = 1; ronda <= rondas; ronda++) {
+            // Caídas y reinicios: un nodo reiniciado vuelve sin correcciones y se registra de nuevo
+            for (int i = 0; i < n; i++) {
+                if (nodos[i].isCaido() && ronda >= caidoHasta[i]) {
+                    nodos[i].reiniciar();
+                    silenciar();
+                    try {
+                        servidor.registrarCliente(nodos[i].getId(), refs[i]);
+                    } finally {
+                        restaurar();
+                    }
+                } else if (!nodos[i].isCaido() && azar.nextDouble() < caidas) {
+                    nodos[i].caer();
+                    caidoHasta[i] = ronda + rondasCaido;
+                    r.caidas++;
+                }
+            }
+
+            cpuCoordinador += cpuHilosCoordinador(cpuHilos);
+            long cpuLlamador = HILOS.getCurrentThreadCpuTime();
+            silenciar();
+            try {
+                servidor.sincronizar();
+            } finally {
+                restaurar();
+            }
+            cpuCoordinador += HILOS.getCurrentThreadCpuTime() - cpuLlamador + cpuHilosCoordinador(cpuHilos);
+            r.hilosCoordinador = Math.max(r.hilosCoordinador, cpuHilos.size());
+
+            int vivos = medirResiduales(servidor, nodos, residuales);
+            Arrays.sort(residuales, 0, vivos);
+            long p99 = vivos > 0 ? residuales[Math.min(vivos - 1, (int) (vivos * 0.99))] : 0;
+            if (r.convergenciaRondas < 0 && p99 <= toleranciaMs) {
+                r.convergenciaRondas = ronda;
+                r.convergenciaMs = (System.nanoTime() - inicio) / 1_000_000;
+            }
+            if (ronda == rondas) {
+                r.residualP50 = vivos > 0 ? residuales[vivos / 2] : 0;
+                r.residualP99 = p99;
+                r.residualMax = vivos > 0 ? residuales[vivos - 1] : 0;
+            } else {
+                Thread.sleep(pausaMs);
+            }
+        }
+
+        MetricasSincronizacion metricas = servidor.getMetricas();
+        r.cpuPorRondaMs = cpuCoordinador / 1e6 / rondas;
+        r.rondaP99Ms = metricas.getDuracionRondaP99Micros() / 1000.0;
+        r.omitidos = metricas.getClientesOmitidosTotales();
+        r.fallosAjuste = metricas.getFallosEnvioAjuste();
+        r.heapMb = Math.max(0, heapTrasGc() - heapNodos) / (1024.0 * 1024.0);
+
+        // Sin esto la rueda de leases y los pools de este tamaño seguirían vivos en el siguiente
+        servidor.cerrar();
+        if (rmi) {
+            for (NodoSimulado nodo : nodos) {
+                UnicastRemoteObject.unexportObject(nodo, true);
+            }
+        }
+        return r;
+    }
+
+    // |hora mostrada por el nodo - hora mostrada por el servidor| de cada nodo vivo; devuelve cuántos hay.
+    // Se comparan las lecturas, no las horas objetivo, que ya incluyen el slew que falta por aplicar.
+    private static int medirResiduales(ClockServer servidor, NodoSimulado[] nodos, long[] residuales) throws RemoteException {
+        int vivos = 0;
+        for (NodoSimulado nodo : nodos) {
+            if (nodo.isCaido()) {
+                continue;
+            }
+            long referencia = servidor.getTimeMillis();
+            residuales[vivos++] = Math.abs(nodo.leerMillis() - referencia);
+        }
+        return vivos;
+    }
+
+    // CPU consumida por los hilos del coordinador desde la última llamada (0 si la JVM no la mide).
+    // Guarda en cpuHilos la última lectura de cada hilo vivo; los que ya no existen se olvidan.
+    private static long cpuHilosCoordinador(Map<Long, Long> cpuHilos) {
+        if (!HILOS.isThreadCpuTimeSupported()) {
+            return 0;
+        }
+        Map<Long, Long> previos = new HashMap<>(cpuHilos);
+        cpuHilos.clear();
+        long total = 0;
+        for (ThreadInfo info : HILOS.getThreadInfo(HILOS.getAllThreadIds())) {
+            if (info == null || !HILOS_COORDINADOR.contains(info.getThreadName())) {
+                continue;
+            }
+            long cpu = HILOS.getThreadCpuTime(info.getThreadId());
+            if (cpu < 0) {
+                continue;
+            }
+            total += cpu - previos.getOrDefault(info.getThreadId(), 0L);
+            cpuHilos.put(info.getThreadId(), cpu);
+        }
+        return total;
+    }
+
+    private static long heapTrasGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // Las tablas del servidor por ronda no caben en la consola con miles de nodos
+    private void silenciar() {
+        System.setOut(nula);
+        System.setErr(nula);
+    }
+
+    private void restaurar() {
+        System.setOut(salida);
+        System.setErr(errores);
+    }
+}
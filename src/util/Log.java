@@ -0,0 +1,221 @@
+package util;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registro asíncrono para las rutas calientes (getTimeMillis, sample, applyAdjustment).
+ * Los productores solo copian referencias y valores primitivos a un buffer circular
+ * preasignado; un hilo en segundo plano formatea y escribe en consola. Si el buffer se llena
+ * los mensajes se descartan (y se cuentan) en lugar de bloquear a quien registra.
+ *
+ * Nivel mínimo: -Dclock.log.nivel (DEBUG, INFO, WARN, ERROR; INFO por defecto).
+ */
+public final class Log {
+
+    public enum Nivel { DEBUG, INFO, WARN, ERROR }
+
+    private static final byte TEXTO = 0;
+    private static final byte ENTERO = 1;
+    private static final byte DECIMAL = 2;
+    private static final byte HORA = 3;
+
+    private static final int CAPACIDAD = capacidad(Integer.getInteger("clock.log.capacidad", 8192));
+    private static final int MASCARA = CAPACIDAD - 1;
+    private static final long ESPERA_NANOS = 1_000_000L;
+
+    private static volatile Nivel nivelMinimo =
+            Nivel.valueOf(System.getProperty("clock.log.nivel", "INFO").trim().toUpperCase());
+
+    // Ranuras del buffer circular (una entrada = misma posición en todos los arreglos)
+    private static final Nivel[] niveles = new Nivel[CAPACIDAD];
+    private static final byte[] tipos = new byte[CAPACIDAD];
+    private static final long[] marcas = new long[CAPACIDAD];
+    private static final String[] prefijos = new String[CAPACIDAD];
+    private static final String[] mensajes = new String[CAPACIDAD];
+    private static final long[] valores = new long[CAPACIDAD];
+    // Secuencia publicada en cada ranura; el consumidor solo lee cuando coincide con la esperada
+    private static final AtomicLongArray publicadas = new AtomicLongArray(CAPACIDAD);
+
+    private static final AtomicLong siguiente = new AtomicLong();
+    private static final AtomicLong consumidas = new AtomicLong();
+    private static final AtomicLong descartadas = new AtomicLong();
+    // Descartes ya avisados en consola (protegido por Log.class)
+    private static long descartadasInformadas;
+
+    private static final Thread drenador;
+
+    static {
+        for (int i = 0; i < CAPACIDAD; i++) {
+            publicadas.set(i, -1);
+        }
+        drenador = new Thread(Log::drenar, "log-drenador");
+        drenador.setDaemon(true);
+        drenador.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::vaciar, "log-vaciado"));
+    }
+
+    private Log() {
+    }
+
+    private static int capacidad(int solicitada) {
+        int c = Integer.highestOneBit(Math.max(16, solicitada));
+        return c < solicitada ? c << 1 : c;
+    }
+
+    public static Nivel getNivel() {
+        return nivelMinimo;
+    }
+
+    public static void setNivel(Nivel nivel) {
+        nivelMinimo = nivel;
+    }
+
+    public static boolean activo(Nivel nivel) {
+        return nivel.compareTo(nivelMinimo) >= 0;
+    }
+
+    /** Mensajes descartados porque el buffer estaba lleno. */
+    public static long getDescartados() {
+        return descartadas.get();
+    }
+
+    /** Registra "prefijo + mensaje". */
+    public static void texto(Nivel nivel, String prefijo, String mensaje) {
+        publicar(nivel, TEXTO, prefijo, mensaje, 0);
+    }
+
+    /** Registra "prefijo + mensaje + valor". */
+    public static void valor(Nivel nivel, String prefijo, String mensaje, long valor) {
+        publicar(nivel, ENTERO, prefijo, mensaje, valor);
+    }
+
+    /** Registra "prefijo + mensaje + valor" con un valor decimal. */
+    public static void valor(Nivel nivel, String prefijo, String mensaje, double valor) {
+        publicar(nivel, DECIMAL, prefijo, mensaje, Double.doubleToRawLongBits(valor));
+    }
+
+    /** Registra "prefijo + mensaje + hora formateada (ms=millis)". */
+    public static void hora(Nivel nivel, String prefijo, String mensaje, long millis) {
+        publicar(nivel, HORA, prefijo, mensaje, millis);
+    }
+
+    private static void publicar(Nivel nivel, byte tipo, String prefijo, String mensaje, long valor) {
+        if (!activo(nivel)) {
+            return;
+        }
+        long marca = System.currentTimeMillis();
+
+        // Reservar una ranura; si el consumidor va una vuelta por detrás se descarta el mensaje
+        long seq;
+        do {
+            seq = siguiente.get();
+            if (seq - consumidas.get() >= CAPACIDAD) {
+                descartadas.incrementAndGet();
+                return;
+            }
+        } while (!siguiente.compareAndSet(seq, seq + 1));
+
+        int i = (int) (seq & MASCARA);
+        niveles[i] = nivel;
+        tipos[i] = tipo;
+        marcas[i] = marca;
+        prefijos[i] = prefijo;
+        mensajes[i] = mensaje;
+        valores[i] = valor;
+        // Escritura volátil: hace visibles los campos anteriores al hilo drenador
+        publicadas.set(i, seq);
+    }
+
+    private static void drenar() {
+        Escritor escritor = new Escritor();
+        while (true) {
+            if (escritor.escribirPendientes() == 0) {
+                LockSupport.parkNanos(ESPERA_NANOS);
+            }
+        }
+    }
+
+    // Al terminar la JVM se escribe lo que quede en el buffer
+    private static synchronized void vaciar() {
+        new Escritor().escribirPendientes();
+    }
+
+    /** Formatea y escribe entradas; reutiliza sus buffers entre líneas. */
+    private static final class Escritor {
+        private final StringBuilder linea = new StringBuilder(256);
+        private final char[] buffer = new char[TimeUtils.LONGITUD_ISO];
+        private final TimeUtils.Formateador formateador = new TimeUtils.Formateador();
+
+        // Devuelve cuántas entradas escribió
+        int escribirPendientes() {
+            int escritas = 0;
+            boolean salidaUsada = false;
+            boolean errorUsado = false;
+            synchronized (Log.class) {
+                long seq = consumidas.get();
+                while (true) {
+                    int i = (int) (seq & MASCARA);
+                    if (publicadas.get(i) != seq) {
+                        break;
+                    }
+                    Nivel nivel = niveles[i];
+                    formatear(nivel, tipos[i], marcas[i], prefijos[i], mensajes[i], valores[i]);
+                    prefijos[i] = null;
+                    mensajes[i] = null;
+                    seq++;
+                    consumidas.set(seq);
+
+                    PrintStream destino = nivel.compareTo(Nivel.WARN) >= 0 ? System.err : System.out;
+                    destino.append(linea);
+                    salidaUsada |= destino == System.out;
+                    errorUsado |= destino == System.err;
+                    escritas++;
+                }
+
+                long perdidas = descartadas.get();
+                if (perdidas != descartadasInformadas) {
+                    System.err.println("[log] " + (perdidas - descartadasInformadas) + " mensajes descartados (buffer lleno)");
+                    descartadasInformadas = perdidas;
+                    errorUsado = true;
+                }
+            }
+            if (salidaUsada) {
+                System.out.flush();
+            }
+            if (errorUsado) {
+                System.err.flush();
+            }
+            return escritas;
+        }
+
+        private void formatear(Nivel nivel, byte tipo, long marca, String prefijo, String mensaje, long valor) {
+            linea.setLength(0);
+            formateador.formatear(marca, linea, buffer);
+            linea.append(' ').append(nivel.name()).append(' ');
+            if (prefijo != null) {
+                linea.append(prefijo);
+            }
+            if (mensaje != null) {
+                linea.append(mensaje);
+            }
+            switch (tipo) {
+                case ENTERO:
+                    linea.append(valor);
+                    break;
+                case DECIMAL:
+                    linea.append(Double.longBitsToDouble(valor));
+                    break;
+                case HORA:
+                    formateador.formatear(valor, linea, buffer);
+                    linea.append(" (ms=").append(valor).append(')');
+                    break;
+                default:
+                    break;
+            }
+            linea.append(System.lineSeparator());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Núcleo de reloj compartido por cliente y servidor: aplica las correcciones de forma gradual
+ * (slew) en lugar de a saltos y garantiza lecturas monótonas con acceso concurrente, sin locks.
+ *
+ * El estado es inmutable y se sustituye con CAS; la hora "objetivo" (con todas las correcciones
+ * ya aplicadas) es la que se usa para medir desfases, y la hora "leída" es la que avanza de forma
+ * continua y monótona hacia ella.
+ */
+public final class RelojAjustable {
+    private static final long NANOS_POR_MS = 1_000_000L;
+
+    /** Estado inmutable: correcciones vigentes desde el instante bruto 'base'. */
+    private static final class Estado {
+        final long base;
+        final long offsetBase;
+        final double ppm;
+        final long pendiente;
+
+        Estado(long base, long offsetBase, double ppm, long pendiente) {
+            this.base = base;
+            this.offsetBase = offsetBase;
+            this.ppm = ppm;
+            this.pendiente = pendiente;
+        }
+    }
+
+    private final LongSupplier fuenteNanos;
+    private final double tasaSlew;
+    private final long umbralPasoNanos;
+    private final AtomicReference<Estado> estado;
+    // Última lectura entregada (ns); impide que dos hilos vean el reloj retroceder
+    private final AtomicLong ultimaLectura = new AtomicLong(Long.MIN_VALUE);
+
+    public RelojAjustable(long offsetInicialMillis) {
+        this(offsetInicialMillis, relojDelSistema(),
+             Double.parseDouble(System.getProperty("clock.slew.tasa", "0.05")),
+             Long.getLong("clock.slew.umbralPasoMs", 1000L));
+    }
+
+    /**
+     * @param fuenteNanos     hora bruta del nodo en ns desde la época
+     * @param tasaSlew        fracción de tiempo que se puede adelantar/atrasar el reloj al corregir
+     *                        (0.05 = 50 ms por segundo); debe ser menor que 1 para ser monótono
+     * @param umbralPasoMs    las correcciones hacia adelante mayores que esto se aplican de golpe
+     */
+    public RelojAjustable(long offsetInicialMillis, LongSupplier fuenteNanos, double tasaSlew, long umbralPasoMs) {
+        if (tasaSlew <= 0 || tasaSlew >= 1) {
+            throw new IllegalArgumentException("La tasa de slew debe estar en (0, 1)");
+        }
+        this.fuenteNanos = fuenteNanos;
+        this.tasaSlew = tasaSlew;
+        this.umbralPasoNanos = umbralPasoMs * NANOS_POR_MS;
+        this.estado = new AtomicReference<>(
+                new Estado(fuenteNanos.getAsLong(), offsetInicialMillis * NANOS_POR_MS, 0, 0));
+    }
+
+    /** Hora bruta del sistema en ns, anclada a currentTimeMillis y medida con nanoTime. */
+    public static LongSupplier relojDelSistema() {
+        long epoca = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        long ancla = System.nanoTime();
+        return () -> epoca + (System.nanoTime() - ancla);
+    }
+
+    // Parte del slew pendiente ya aplicada 'transcurrido' ns después de la base
+    private long slewAplicado(Estado e, long transcurrido) {
+        long maximo = (long) (tasaSlew * transcurrido);
+        return e.pendiente >= 0 ? Math.min(e.pendiente, maximo) : Math.max(e.pendiente, -maximo);
+    }
+
+    private static long deriva(Estado e, long transcurrido) {
+        return (long) (e.ppm * transcurrido / 1e6);
+    }
+
+    /** Hora leída en ms: avanza de forma continua y nunca retrocede. */
+    public long leerMillis() {
+        long bruto = fuenteNanos.getAsLong();
+        Estado e = estado.get();
+        long transcurrido = bruto - e.base;
+        long t = bruto + e.offsetBase + deriva(e, transcurrido) + slewAplicado(e, transcurrido);
+        long monotona = ultimaLectura.accumulateAndGet(t, Math::max);
+        return Math.floorDiv(monotona, NANOS_POR_MS);
+    }
+
+    /** Hora objetivo en ms: incluye las correcciones que aún se están aplicando. */
+    public long objetivoMillis() {
+        long bruto = fuenteNanos.getAsLong();
+        return Math.floorDiv(bruto + correccionObjetivo(estado.get(), bruto), NANOS_POR_MS);
+    }
+
+    /** Como objetivoMillis(), en ns: conserva la fracción de milisegundo. */
+    public long objetivoNanos() {
+        long bruto = fuenteNanos.getAsLong();
+        return bruto + correccionObjetivo(estado.get(), bruto);
+    }
+
+    /** Hora bruta del nodo en ms, sin ninguna corrección. */
+    public long brutoMillis() {
+        return Math.floorDiv(fuenteNanos.getAsLong(), NANOS_POR_MS);
+    }
+
+    /** Corrección total (ms) que se habrá aplicado cuando termine el slew en curso. */
+    public long correccionMillis() {
+        return Math.floorDiv(correccionObjetivo(estado.get(), fuenteNanos.getAsLong()), NANOS_POR_MS);
+    }
+
+    /** Como correccionMillis(), pero conservando la fracción de milisegundo. */
+    public double correccionExactaMillis() {
+        return correccionObjetivo(estado.get(), fuenteNanos.getAsLong()) / (double) NANOS_POR_MS;
+    }
+
+    /** Parte de las correcciones (ms) que todavía no se refleja en la hora leída. */
+    public double pendienteMillis() {
+        Estado e = estado.get();
+        long transcurrido = fuenteNanos.getAsLong() - e.base;
+        return (e.pendiente - slewAplicado(e, transcurrido)) / (double) NANOS_POR_MS;
+    }
+
+    public double getDerivaPpm() {
+        return estado.get().ppm;
+    }
+
+    private static long correccionObjetivo(Estado e, long bruto) {
+        return e.offsetBase + deriva(e, bruto - e.base) + e.pendiente;
+    }
+
+    /**
+     * Programa una corrección (ms, admite fracciones). Se aplica gradualmente, salvo los saltos
+     * hacia adelante mayores que el umbral de paso, que se aplican de inmediato.
+     */
+    public void ajustar(double deltaMillis) {
+        long delta = Math.round(deltaMillis * NANOS_POR_MS);
+        while (true) {
+            Estado e = estado.get();
+            long ahora = fuenteNanos.getAsLong();
+            long transcurrido = ahora - e.base;
+            long aplicado = slewAplicado(e, transcurrido);
+
+            long offset = e.offsetBase + deriva(e, transcurrido) + aplicado;
+            long pendiente = e.pendiente - aplicado + delta;
+            if (pendiente > umbralPasoNanos) {
+                offset += pendiente;
+                pendiente = 0;
+            }
+            if (estado.compareAndSet(e, new Estado(ahora, offset, e.ppm, pendiente))) {
+                return;
+            }
+        }
+    }
+
+    /** Fija la corrección de frecuencia (ppm); lo acumulado con la tasa anterior se conserva. */
+    public void fijarDerivaPpm(double ppm) {
+        if (Math.abs(ppm) >= 1e6 * (1 - tasaSlew)) {
+            throw new IllegalArgumentException("Corrección de frecuencia fuera de rango: " + ppm);
+        }
+        while (true) {
+            Estado e = estado.get();
+            long ahora = fuenteNanos.getAsLong();
+            long transcurrido = ahora - e.base;
+            long aplicado = slewAplicado(e, transcurrido);
+
+            long offset = e.offsetBase + deriva(e, transcurrido) + aplicado;
+            if (estado.compareAndSet(e, new Estado(ahora, offset, ppm, e.pendiente - aplicado))) {
+                return;
+            }
+        }
+    }
+}
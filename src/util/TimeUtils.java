@@ -11,6 +11,9 @@ public static final DateTimeFormatter ISO =
 DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS")
 .withZone(ZoneId.systemDefault());
 
+// Longitud de una hora formateada con ISO ("yyyy-MM-ddTHH:mm:ss.SSS")
+public static final int LONGITUD_ISO = 23;
+
 
 public static String fmt(long millis) {
 return ISO.format(Instant.ofEpochMilli(millis));
@@ -20,4 +23,42 @@ return ISO.format(Instant.ofEpochMilli(millis));
 public static String secs(long millis) {
 return String.format("%.3f", millis / 1000.0);
 }
-}
\ No newline at end of file
+
+
+/**
+ * Formateador con el mismo formato que ISO que no reserva memoria por llamada: guarda el
+ * prefijo "yyyy-MM-ddTHH:mm:ss" del último segundo formateado y solo escribe los milisegundos.
+ * No es seguro para hilos; cada hilo debe usar su propia instancia.
+ */
+public static final class Formateador {
+private static final int LONGITUD_PREFIJO = 19;
+
+private final char[] prefijo = new char[LONGITUD_PREFIJO];
+private long segundoEnCache = Long.MIN_VALUE;
+
+/** Escribe la hora en destino a partir de pos y devuelve la posición siguiente. */
+public int formatear(long millis, char[] destino, int pos) {
+long segundo = Math.floorDiv(millis, 1000L);
+if (segundo != segundoEnCache) {
+// Solo se recalcula (y se reserva memoria) una vez por segundo
+ISO.format(Instant.ofEpochSecond(segundo)).getChars(0, LONGITUD_PREFIJO, prefijo, 0);
+segundoEnCache = segundo;
+}
+System.arraycopy(prefijo, 0, destino, pos, LONGITUD_PREFIJO);
+pos += LONGITUD_PREFIJO;
+
+int ms = (int) Math.floorMod(millis, 1000L);
+destino[pos++] = '.';
+destino[pos++] = (char) ('0' + ms / 100);
+destino[pos++] = (char) ('0' + (ms / 10) % 10);
+destino[pos++] = (char) ('0' + ms % 10);
+return pos;
+}
+
+/** Añade la hora al final de sb usando buffer como área de trabajo (al menos LONGITUD_ISO). */
+public void formatear(long millis, StringBuilder sb, char[] buffer) {
+int fin = formatear(millis, buffer, 0);
+sb.append(buffer, 0, fin);
+}
+}
+}
@@ -0,0 +1,42 @@
+package util;
+
+/**
+ * Registro de las épocas de ajuste ya aplicadas por un nodo.
+ * Recuerda la época más alta y, en un mapa de bits, cuáles de las 64 anteriores se aplicaron,
+ * de modo que una época atrasada que no se había visto (por ejemplo, un ajuste reenviado por
+ * el coordinador superior que llega después de una ronda propia) se aplica igualmente, y una
+ * repetida se descarta. Las épocas más antiguas que la ventana se consideran ya aplicadas.
+ */
+public final class VentanaEpocas {
+    private static final int TAMANO = 64;
+
+    private long maxima = Long.MIN_VALUE;
+    // Bit i: la época (maxima - i) ya se aplicó
+    private long vistas;
+
+    /** Marca la época como aplicada; devuelve false si ya lo estaba (o es demasiado antigua). */
+    public synchronized boolean marcar(long epoca) {
+        if (vistas == 0 || epoca > maxima) {
+            long salto = vistas == 0 ? TAMANO : epoca - maxima;
+            vistas = salto >= TAMANO ? 1L : (vistas << salto) | 1L;
+            maxima = epoca;
+            return true;
+        }
+        long distancia = maxima - epoca;
+        if (distancia >= TAMANO) {
+            return false;
+        }
+        long bit = 1L << distancia;
+        if ((vistas & bit) != 0) {
+            return false;
+        }
+        vistas |= bit;
+        return true;
+    }
+
+    /** Olvida todas las épocas, para aceptar la numeración de un coordinador nuevo. */
+    public synchronized void reiniciar() {
+        maxima = Long.MIN_VALUE;
+        vistas = 0;
+    }
+}
@@ -0,0 +1,138 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiarioDerivaTest {
+
+    private static final int SEGMENTO = 4 * 1024;
+
+    @TempDir
+    Path directorio;
+
+    /** Guarda cada registro reproducido como texto, en orden. */
+    private static final class Registros implements DiarioDeriva.Lector {
+        final List<String> leidos = new ArrayList<>();
+
+        @Override
+        public void muestra(String clientId, long horaServidor, double desfaseBruto, double rtt) {
+            leidos.add("M " + clientId + " " + horaServidor + " " + desfaseBruto + " " + rtt);
+        }
+
+        @Override
+        public void ajuste(String clientId, long horaServidor, double ajuste) {
+            leidos.add("A " + clientId + " " + horaServidor + " " + ajuste);
+        }
+
+        @Override
+        public void relojServidor(long horaServidor, double correccion) {
+            leidos.add("R " + horaServidor + " " + correccion);
+        }
+    }
+
+    private List<String> reabrir(int tamanoSegmento) throws IOException {
+        Registros r = new Registros();
+        try (DiarioDeriva d = new DiarioDeriva(directorio, tamanoSegmento, 4, 2)) {
+            d.abrir(r);
+        }
+        return r.leidos;
+    }
+
+    private long contarSegmentos() throws IOException {
+        try (Stream<Path> s = Files.list(directorio)) {
+            return s.filter(p -> p.getFileName().toString().startsWith("segmento-")).count();
+        }
+    }
+
+    @Test
+    void lasMuestrasYLaCorreccionDelServidorSobrevivenAUnReinicio() throws IOException {
+        try (DiarioDeriva d = new DiarioDeriva(directorio, SEGMENTO, 4, 2)) {
+            d.abrir(new Registros());
+            d.muestra("nodo-a", 1_000, -12.5, 0.75);
+            d.muestra("nodo-ñ", 1_001, 3.25, 1.5);
+            d.ajuste("nodo-a", 1_002, 12.5);
+            d.relojServidor(1_003, -40.125);
+        }
+
+        assertEquals(List.of("M nodo-a 1000 -12.5 0.75", "M nodo-ñ 1001 3.25 1.5", "A nodo-a 1002 12.5",
+                             "R 1003 -40.125"), reabrir(SEGMENTO));
+    }
+
+    @Test
+    void alReiniciarSeSigueEscribiendoEnElUltimoSegmento() throws IOException {
+        try (DiarioDeriva d = new DiarioDeriva(directorio, SEGMENTO, 4, 2)) {
+            d.abrir(new Registros());
+            d.muestra("a", 1, 1, 0);
+        }
+        try (DiarioDeriva d = new DiarioDeriva(directorio, SEGMENTO, 4, 2)) {
+            d.abrir(new Registros());
+            d.muestra("a", 2, 2, 0);
+        }
+
+        assertEquals(1, contarSegmentos());
+        assertEquals(List.of("M a 1 1.0 0.0", "M a 2 2.0 0.0"), reabrir(SEGMENTO));
+    }
+
+    @Test
+    void unRegistroSinTipoSeDescartaYSuHuecoSeReutiliza() throws IOException {
+        try (DiarioDeriva d = new DiarioDeriva(directorio, SEGMENTO, 4, 2)) {
+            d.abrir(new Registros());
+            d.muestra("a", 1, 1, 0);
+            d.muestra("b", 2, 2, 0);
+        }
+
+        // Escritura cortada antes del byte de tipo: el resto del registro ya está en el fichero
+        Path segmento;
+        try (Stream<Path> s = Files.list(directorio)) {
+            segmento = s.filter(p -> p.getFileName().toString().startsWith("segmento-")).findFirst().orElseThrow();
+        }
+        try (FileChannel c = FileChannel.open(segmento, StandardOpenOption.WRITE)) {
+            c.write(ByteBuffer.wrap(new byte[] {0}), DiarioDeriva.TAMANO_REGISTRO);
+        }
+
+        assertEquals(List.of("M a 1 1.0 0.0"), reabrir(SEGMENTO));
+
+        try (DiarioDeriva d = new DiarioDeriva(directorio, SEGMENTO, 4, 2)) {
+            d.abrir(new Registros());
+            d.muestra("c", 3, 3, 0);
+        }
+        assertEquals(List.of("M a 1 1.0 0.0", "M c 3 3.0 0.0"), reabrir(SEGMENTO));
+    }
+
+    @Test
+    void trasCompactarSeReproducenLasUltimasMuestrasYLaUltimaCorreccion() throws IOException {
+        // Dos registros por segmento: 8 muestras y 2 correcciones ocupan 5 segmentos
+        int segmento = 2 * DiarioDeriva.TAMANO_REGISTRO;
+        try (DiarioDeriva d = new DiarioDeriva(directorio, segmento, 1, 2)) {
+            d.abrir(new Registros());
+            for (int i = 1; i <= 4; i++) {
+                d.muestra("a", i, i, 0);
+                d.muestra("b", i, -i, 0);
+            }
+            d.relojServidor(5, 10);
+            d.relojServidor(6, 20);
+            // El último segmento sigue activo y no se compacta
+            d.muestra("a", 7, 7, 0);
+            d.compactarSiHaceFalta();
+        }
+
+        assertEquals(2, contarSegmentos());
+        List<String> leidos = reabrir(segmento);
+        assertEquals(6, leidos.size());
+        assertTrue(leidos.containsAll(List.of("M a 3 3.0 0.0", "M a 4 4.0 0.0", "M b 3 -3.0 0.0", "M b 4 -4.0 0.0")));
+        assertEquals("R 6 20.0", leidos.get(4));
+        assertEquals("M a 7 7.0 0.0", leidos.get(5));
+    }
+}
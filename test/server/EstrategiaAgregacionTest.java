@@ -0,0 +1,88 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class EstrategiaAgregacionTest {
+
+    private static final double DELTA = 1e-9;
+
+    // Los desfases llegan en microsegundos
+    private static final long MS = 1000;
+
+    @Test
+    void sinValoresDevuelveNaN() {
+        long[] vacio = new long[4];
+        assertTrue(Double.isNaN(EstrategiaAgregacion.media().agregar(vacio, 0)));
+        assertTrue(Double.isNaN(EstrategiaAgregacion.mediaRecortada(0.25).agregar(vacio, 0)));
+        assertTrue(Double.isNaN(EstrategiaAgregacion.mediana().agregar(vacio, 0)));
+        assertTrue(Double.isNaN(EstrategiaAgregacion.tolerante(1).agregar(vacio, 0)));
+    }
+
+    @Test
+    void unSoloValorEsElConsenso() {
+        long[] uno = {-1234, 99, 99};
+        assertEquals(-1234, EstrategiaAgregacion.media().agregar(uno, 1), DELTA);
+        assertEquals(-1234, EstrategiaAgregacion.mediaRecortada(0.49).agregar(uno, 1), DELTA);
+        assertEquals(-1234, EstrategiaAgregacion.mediana().agregar(uno, 1), DELTA);
+        assertEquals(-1234, EstrategiaAgregacion.tolerante(1).agregar(uno, 1), DELTA);
+    }
+
+    @Test
+    void dosValoresPromedianEnTodasLasEstrategias() {
+        long[] dos = {0, 3 * MS};
+        assertEquals(1500, EstrategiaAgregacion.media().agregar(dos, 2), DELTA);
+        assertEquals(1500, EstrategiaAgregacion.mediaRecortada(0.25).agregar(dos, 2), DELTA);
+        assertEquals(1500, EstrategiaAgregacion.mediana().agregar(dos, 2), DELTA);
+        assertEquals(1500, EstrategiaAgregacion.tolerante(2).agregar(dos, 2), DELTA);
+    }
+
+    @Test
+    void medianaConCantidadParPromediaLosDosCentrales() {
+        long[] v = {40, -10, 30, 0, 999};
+        assertEquals(15, EstrategiaAgregacion.mediana().agregar(v, 4), DELTA);
+        assertEquals(30, EstrategiaAgregacion.mediana().agregar(v, 5), DELTA);
+    }
+
+    @Test
+    void recorteMaximoConservaAlMenosElValorCentral() {
+        long[] v = {5, 1, 1000, -1000, 3};
+        // 5 * 0.49 = 2 por extremo: solo queda la mediana
+        assertEquals(3, EstrategiaAgregacion.mediaRecortada(0.49).agregar(v, 5), DELTA);
+        assertEquals(3, EstrategiaAgregacion.mediaRecortada(0.25).agregar(v, 5), DELTA);
+        assertThrows(IllegalArgumentException.class, () -> EstrategiaAgregacion.mediaRecortada(0.5));
+        assertThrows(IllegalArgumentException.class, () -> EstrategiaAgregacion.mediaRecortada(-0.1));
+    }
+
+    @Test
+    void toleranteComparaElUmbralEnMicrosegundos() {
+        long[] v = {0, 900, 1100, 50 * MS};
+        // Umbral de 1 ms alrededor de la mediana (1000 µs): entran 0, 900 y 1100
+        assertEquals(2000 / 3.0, EstrategiaAgregacion.tolerante(1).agregar(v, 4), DELTA);
+    }
+
+    @Test
+    void toleranteSinValoresDentroDelUmbralDevuelveLaMediana() {
+        long[] v = {0, 10 * MS};
+        assertEquals(5 * MS, EstrategiaAgregacion.tolerante(1).agregar(v, 2), DELTA);
+    }
+
+    @Test
+    void noModificaLaEntradaYReutilizaSuCopiaEntreRondas() {
+        EstrategiaAgregacion mediana = EstrategiaAgregacion.mediana();
+        long[] grande = {9, 7, 5, 3, 1, 8, 6, 4, 2, 0};
+        long[] copia = grande.clone();
+        assertEquals(4.5, mediana.agregar(grande, 10), DELTA);
+        assertArrayEquals(copia, grande);
+
+        // Una ronda más pequeña no debe ver restos de la anterior en la copia reutilizada
+        long[] pequeno = {100, 300, 200};
+        assertEquals(200, mediana.agregar(pequeno, 3), DELTA);
+        assertEquals(200, mediana.agregar(pequeno, 2), DELTA);
+        assertArrayEquals(new long[] {100, 300, 200}, pequeno);
+    }
+}
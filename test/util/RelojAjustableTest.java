@@ -0,0 +1,121 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.Test;
+
+class RelojAjustableTest {
+
+    private static final int LECTORES = 6;
+    private static final int ESCRITORES = 2;
+    private static final long DURACION_MS = 2_000;
+
+    /**
+     * Lectores concurrentes mientras otros hilos ajustan el offset (saltos hacia adelante y slews
+     * en ambos sentidos) y cambian la deriva: ninguna lectura puede ser menor que otra ya publicada.
+     */
+    @Test
+    void leerMillisNuncaRetrocedeConEscriturasConcurrentes() throws Exception {
+        // De vez en cuando la fuente se detiene unos ms tras leer la hora bruta: agranda la ventana
+        // entre esa lectura y la del estado, donde un escritor puede colarse
+        LongSupplier sistema = RelojAjustable.relojDelSistema();
+        LongSupplier fuente = () -> {
+            long t = sistema.getAsLong();
+            if (ThreadLocalRandom.current().nextInt(64) == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(3));
+            }
+            return t;
+        };
+        RelojAjustable reloj = new RelojAjustable(0, fuente, 0.5, 1000);
+        AtomicLong maximoPublicado = new AtomicLong(Long.MIN_VALUE);
+        AtomicBoolean parar = new AtomicBoolean();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(LECTORES + ESCRITORES);
+        List<Future<Long>> lecturas = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < LECTORES; i++) {
+                lecturas.add(hilos.submit(() -> {
+                    salida.await();
+                    long n = 0;
+                    long ultima = Long.MIN_VALUE;
+                    while (!parar.get()) {
+                        // Publicado antes de esta lectura: la lectura no puede ser menor
+                        long previo = maximoPublicado.get();
+                        long t = reloj.leerMillis();
+                        if (t < previo || t < ultima) {
+                            throw new AssertionError("El reloj retrocedió: " + t + " < " + Math.max(previo, ultima));
+                        }
+                        ultima = t;
+                        maximoPublicado.accumulateAndGet(t, Math::max);
+                        n++;
+                    }
+                    return n;
+                }));
+            }
+            List<Future<?>> escrituras = new ArrayList<>();
+            for (int i = 0; i < ESCRITORES; i++) {
+                escrituras.add(hilos.submit(() -> {
+                    salida.await();
+                    ThreadLocalRandom azar = ThreadLocalRandom.current();
+                    while (!parar.get()) {
+                        if (azar.nextBoolean()) {
+                            reloj.ajustar(azar.nextDouble(-2_000, 2_000));
+                        } else {
+                            reloj.fijarDerivaPpm(azar.nextDouble(-500, 500));
+                        }
+                        Thread.onSpinWait();
+                    }
+                    return null;
+                }));
+            }
+
+            salida.countDown();
+            Thread.sleep(DURACION_MS);
+            parar.set(true);
+
+            long total = 0;
+            for (Future<Long> lectura : lecturas) {
+                total += lectura.get(5, TimeUnit.SECONDS);
+            }
+            for (Future<?> escritura : escrituras) {
+                escritura.get(5, TimeUnit.SECONDS);
+            }
+            assertTrue(total > 0, "Los lectores no llegaron a leer");
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    /** Un retraso se aplica de forma gradual y la hora objetivo lo refleja desde el primer momento. */
+    @Test
+    void slewHaciaAtrasSeAplicaGradualmente() {
+        AtomicLong ahora = new AtomicLong(TimeUnit.SECONDS.toNanos(1_000));
+        RelojAjustable reloj = new RelojAjustable(0, ahora::get, 0.1, 1000);
+
+        reloj.ajustar(-100);
+        assertEquals(1_000_000 - 100, reloj.objetivoMillis());
+        assertEquals(-100.0, reloj.pendienteMillis(), 1e-9);
+
+        // 500 ms brutos a una tasa del 10 %: se han aplicado 50 ms del retraso
+        ahora.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(1_000_500 - 50, reloj.leerMillis());
+
+        ahora.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        assertEquals(1_001_500 - 100, reloj.leerMillis());
+        assertEquals(0.0, reloj.pendienteMillis(), 1e-9);
+    }
+}
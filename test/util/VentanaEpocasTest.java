@@ -0,0 +1,34 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class VentanaEpocasTest {
+
+    @Test
+    void epocaAtrasadaNoVistaSeAplicaYLaRepetidaNo() {
+        VentanaEpocas v = new VentanaEpocas();
+        assertTrue(v.marcar(100));
+        // Ronda propia del sub-coordinador adelantándose a un reenvío del coordinador superior
+        assertTrue(v.marcar(102));
+        assertTrue(v.marcar(101));
+        assertFalse(v.marcar(101));
+        assertFalse(v.marcar(102));
+        assertFalse(v.marcar(100));
+    }
+
+    @Test
+    void saltoGrandeOlvidaLasAnterioresYReiniciarAceptaNumeracionNueva() {
+        VentanaEpocas v = new VentanaEpocas();
+        assertTrue(v.marcar(1_000));
+        assertTrue(v.marcar(1_100));
+        assertFalse(v.marcar(1_000));
+        assertTrue(v.marcar(1_050));
+
+        v.reiniciar();
+        assertTrue(v.marcar(5));
+        assertFalse(v.marcar(5));
+    }
+}